@@ -6,6 +6,11 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
 import com.bumptech.glide.Registry;
 
+import com.imagestudio.data.posters.VideoPoster;
+import com.imagestudio.data.posters.VideoPosterLoader;
+
+import java.io.InputStream;
+
 /**
  * Created by dnld on 10/03/16.
  */
@@ -14,7 +19,7 @@ public class CustomGlideModule implements com.bumptech.glide.module.GlideModule
 
     @Override
     public void registerComponents(Context context, Glide glide, Registry registry) {
-
+        registry.prepend(VideoPoster.class, InputStream.class, new VideoPosterLoader.Factory(context));
     }
 
     @Override
@@ -0,0 +1,138 @@
+package com.imagestudio;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Build;
+import android.os.SystemClock;
+import android.provider.BaseColumns;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.orhanobut.hawk.Hawk;
+
+import com.imagestudio.data.Media;
+import com.imagestudio.data.duplicates.SimilarMediaFinder;
+import com.imagestudio.data.metadata.MetadataCache;
+import com.imagestudio.data.provider.Query;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fills the {@link MetadataCache} and the {@link SimilarMediaFinder} hashes ahead of time while the
+ * device is idle and charging.
+ *
+ * Images are walked by MediaStore id in batches, the last indexed id is saved after every batch so
+ * the next run resumes from there. The job stops after the current item when the system asks it to.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class IndexMetadataJob extends JobService {
+
+    private static final String TAG = "IndexMetadataJob";
+
+    private static final int JOB_ID = 1;
+    private static final int BATCH_SIZE = 50;
+    /* renamed when the job indexes something new, so the next run walks every image again */
+    private static final String LAST_INDEXED_ID = "media_index_last_id";
+
+    private volatile boolean stopped = false;
+
+    public static void schedule(Context context) {
+        JobInfo.Builder job = new JobInfo.Builder(JOB_ID, new ComponentName(context, IndexMetadataJob.class))
+                .setPeriodic(TimeUnit.HOURS.toMillis(12))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPersisted(true);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O)
+            job.setRequiresBatteryNotLow(true);
+
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo pending : scheduler.getAllPendingJobs())
+            if (pending.getId() == JOB_ID) return;
+
+        if (scheduler.schedule(job.build()) != JobScheduler.RESULT_SUCCESS)
+            Log.w(TAG, "IndexMetadataJob scheduling failed!");
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters jobParameters) {
+        stopped = false;
+        new Thread(() -> {
+            boolean completed = false;
+            try {
+                completed = index();
+            } catch (Exception e) {
+                Log.e(TAG, "Indexing failed", e);
+            } finally {
+                // a stopped job is rescheduled by onStopJob, jobFinished is ignored then
+                if (!stopped) jobFinished(jobParameters, !completed);
+            }
+        }).start();
+
+        return true;
+    }
+
+    /**
+     * @return true if every image has been indexed, false if the job was stopped before
+     */
+    private boolean index() {
+        MetadataCache cache = MetadataCache.getInstance(getApplicationContext());
+        SimilarMediaFinder hashes = SimilarMediaFinder.getInstance(getApplicationContext());
+        String[] projection = getProjection();
+        int idColumn = projection.length - 1;
+        long lastId = Hawk.get(LAST_INDEXED_ID, 0L);
+
+        while (!stopped) {
+            Query query = new Query.Builder()
+                    .uri(MediaStore.Files.getContentUri("external"))
+                    .projection(projection)
+                    .selection(String.format("%s=? and %s>?", MediaStore.Files.FileColumns.MEDIA_TYPE, BaseColumns._ID))
+                    .args(MediaStore.Files.FileColumns.MEDIA_TYPE_IMAGE, lastId)
+                    .sort(BaseColumns._ID)
+                    .ascending(true)
+                    .limit(BATCH_SIZE)
+                    .build();
+
+            long start = SystemClock.elapsedRealtime();
+            int count = 0, parsed = 0;
+
+            try (Cursor cursor = query.getCursor(getContentResolver())) {
+                if (cursor == null) return true;
+
+                while (!stopped && cursor.moveToNext()) {
+                    Media media = new Media(cursor);
+                    if (cache.index(media) | hashes.index(media)) parsed++;
+                    lastId = cursor.getLong(idColumn);
+                    count++;
+                }
+            }
+
+            Hawk.put(LAST_INDEXED_ID, lastId);
+            Log.d(TAG, String.format("Batch of %d items, %d parsed in %dms, up to id %d",
+                    count, parsed, SystemClock.elapsedRealtime() - start, lastId));
+
+            if (count < BATCH_SIZE && !stopped) return true;
+        }
+        return false;
+    }
+
+    private static String[] getProjection() {
+        String[] mediaProjection = Media.getProjection();
+        String[] projection = new String[mediaProjection.length + 1];
+        System.arraycopy(mediaProjection, 0, projection, 0, mediaProjection.length);
+        projection[mediaProjection.length] = BaseColumns._ID;
+        return projection;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters jobParameters) {
+        stopped = true;
+        return true;
+    }
+}
@@ -212,21 +212,7 @@ public class MainActivity extends SharedMediaActivity implements
     public void onMediaClick(Album album, ArrayList<Media> media, int position) {
 
         if (!pickMode) {
-            Intent intent = new Intent(getApplicationContext(), SingleMediaActivity.class);
-            intent.putExtra(SingleMediaActivity.EXTRA_ARGS_ALBUM, album);
-            try {
-                intent.setAction(SingleMediaActivity.ACTION_OPEN_ALBUM);
-                intent.putExtra(SingleMediaActivity.EXTRA_ARGS_MEDIA, media);
-                intent.putExtra(SingleMediaActivity.EXTRA_ARGS_POSITION, position);
-                startActivity(intent);
-            } catch (Exception e) { // Putting too much data into the Bundle
-                // TODO: Find a better way to pass data between the activities - possibly a key to
-                // access a HashMap or a unique value of a singleton Data Repository of some sort.
-                intent.setAction(SingleMediaActivity.ACTION_OPEN_ALBUM_LAZY);
-                intent.putExtra(SingleMediaActivity.EXTRA_ARGS_MEDIA, media.get(position));
-                startActivity(intent);
-            }
-
+            SingleMediaActivity.startActivity(this, album, media, position);
         } else {
 
             Media m = media.get(position);
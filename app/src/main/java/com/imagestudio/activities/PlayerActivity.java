@@ -18,6 +18,7 @@ package com.imagestudio.activities;
 import android.animation.ArgbEvaluator;
 import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.content.pm.PackageManager;
@@ -26,6 +27,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.annotation.CallSuper;
+import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
 import android.support.v7.widget.Toolbar;
 import android.text.TextUtils;
@@ -80,9 +82,13 @@ import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 import com.imagestudio.R;
 import com.imagestudio.util.Measure;
 import com.imagestudio.util.StringUtils;
+import com.imagestudio.views.videoplayer.BufferPolicy;
 import com.imagestudio.views.videoplayer.CustomExoPlayerView;
 import com.imagestudio.views.videoplayer.CustomPlayBackController;
+import com.imagestudio.views.videoplayer.PlaybackStats;
 import com.imagestudio.views.videoplayer.TrackSelectionHelper;
+import com.imagestudio.views.videoplayer.VideoCache;
+import com.imagestudio.views.videoplayer.WarmPlayerPool;
 import org.horaapps.liz.ThemedActivity;
 
 import java.net.CookieHandler;
@@ -90,6 +96,11 @@ import java.net.CookieManager;
 import java.net.CookiePolicy;
 import java.util.UUID;
 
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
 public class PlayerActivity extends ThemedActivity implements CustomPlayBackController.VisibilityListener {
 
     public static final String DRM_SCHEME_UUID_EXTRA = "drm_scheme_uuid";
@@ -108,7 +119,11 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
     private CustomExoPlayerView simpleExoPlayerView;
 
     private DataSource.Factory mediaDataSourceFactory;
+    private DataSource.Factory streamDataSourceFactory = null;
     private SimpleExoPlayer player;
+    private PlaybackStats stats;
+    private BufferPolicy bufferPolicy = null;
+    private Disposable bufferPolicyLoading = null;
     private MappingTrackSelector trackSelector;
     private TrackSelectionHelper trackSelectionHelper;
 
@@ -153,6 +168,7 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
         releasePlayer();
         shouldAutoPlay = true;
         clearResumePosition();
+        bufferPolicy = null;
         setIntent(intent);
     }
 
@@ -217,6 +233,11 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
     private void initializePlayer() {
         Intent intent = getIntent();
         boolean needNewPlayer = player == null;
+        if (needNewPlayer && takeWarmPlayer(intent)) return;
+        if (needNewPlayer && bufferPolicy == null) {
+            loadBufferPolicy(intent.getData());
+            return;
+        }
         if (needNewPlayer) {
 
             TrackSelection.Factory adaptiveTrackSelectionFactory =
@@ -251,7 +272,7 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
             DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(this,
                     drmSessionManager, DefaultRenderersFactory.EXTENSION_RENDERER_MODE_PREFER);
 
-            player = ExoPlayerFactory.newSimpleInstance(renderersFactory, trackSelector);
+            player = ExoPlayerFactory.newSimpleInstance(renderersFactory, trackSelector, bufferPolicy.buildLoadControl());
             player.addListener(new PlayerEventListener());
             simpleExoPlayerView.setPlayer(player);
             player.setPlayWhenReady(shouldAutoPlay);
@@ -281,12 +302,77 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
         if (haveResumePosition) {
             player.seekTo(resumeWindow, resumePosition);
         }
+        // a player reused after an error or a permission request measures again
+        if (stats != null) player.removeListener(stats);
+        stats = new PlaybackStats(uris[0].toString());
+        player.addListener(stats);
         player.prepare(mediaSource, !haveResumePosition, false);
         inErrorState = false;
         supportInvalidateOptionsMenu();
 
     }
 
+    /**
+     * Pick the buffer policy of the video off the main thread, it may read the container of the
+     * file, and open the stream cache there for a stream, it loads its index. Then build the
+     * player with them.
+     */
+    private void loadBufferPolicy(@Nullable Uri uri) {
+        if (uri == null) {
+            bufferPolicy = BufferPolicy.LOCAL;
+            initializePlayer();
+            return;
+        }
+        if (bufferPolicyLoading != null) return;
+
+        Context context = getApplicationContext();
+        boolean stream = BufferPolicy.isStream(uri);
+        bufferPolicyLoading = Observable.fromCallable(() -> {
+                    if (stream) VideoCache.getInstance(context);
+                    return BufferPolicy.of(context, uri);
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(policy -> {
+                    bufferPolicyLoading = null;
+                    bufferPolicy = policy;
+                    if (stream) streamDataSourceFactory = VideoCache.getInstance(context).wrap(mediaDataSourceFactory);
+                    initializePlayer();
+                }, throwable -> {
+                    bufferPolicyLoading = null;
+                    bufferPolicy = stream ? BufferPolicy.STREAM : BufferPolicy.LOCAL;
+                    // streamed without the cache rather than opening it here
+                    if (stream) streamDataSourceFactory = mediaDataSourceFactory;
+                    initializePlayer();
+                });
+    }
+
+    /**
+     * Take over the player the viewer prepared for this video, if any.
+     *
+     * @return true if the player is ready to be shown, already prepared with the video
+     */
+    private boolean takeWarmPlayer(Intent intent) {
+        if (intent.hasExtra(DRM_SCHEME_UUID_EXTRA) || resumeWindow != C.INDEX_UNSET) return false;
+        WarmPlayerPool.WarmPlayer warm = WarmPlayerPool.getInstance(this).take(intent.getData());
+        if (warm == null) return false;
+
+        trackSelector = warm.trackSelector;
+        trackSelectionHelper = new TrackSelectionHelper(trackSelector, warm.trackSelectionFactory, getThemeHelper());
+        lastSeenTrackGroupArray = null;
+        // startup is measured from the tap, not from the warm up
+        stats = warm.stats;
+        stats.restart();
+
+        player = warm.player;
+        player.addListener(new PlayerEventListener());
+        simpleExoPlayerView.setPlayer(player);
+        player.setPlayWhenReady(shouldAutoPlay);
+        inErrorState = false;
+        supportInvalidateOptionsMenu();
+        return true;
+    }
+
     private DrmSessionManager<FrameworkMediaCrypto> buildDrmSessionManagerV18(UUID uuid,
                                                                               String licenseUrl, String[] keyRequestPropertiesArray, boolean multiSession)
             throws UnsupportedDrmException {
@@ -303,6 +389,9 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
     }
 
     private MediaSource buildMediaSource(Uri uri, String overrideExtension) {
+        // local files are already on disk, only streams go through the cache, opened with the buffer policy
+        DataSource.Factory mediaDataSourceFactory = BufferPolicy.isStream(uri) && streamDataSourceFactory != null
+                ? streamDataSourceFactory : this.mediaDataSourceFactory;
         int type = Util.inferContentType(!TextUtils.isEmpty(overrideExtension) ? "." + overrideExtension : uri.getLastPathSegment());
         switch (type) {
             case C.TYPE_SS:return new SsMediaSource(uri, buildDataSourceFactory(false), new DefaultSsChunkSource.Factory(mediaDataSourceFactory), mainHandler, null);
@@ -314,9 +403,14 @@ public class PlayerActivity extends ThemedActivity implements CustomPlayBackCont
     }
 
     private void releasePlayer() {
+        // resolved again when the player is needed, the activity may be stopped by then
+        if (bufferPolicyLoading != null) bufferPolicyLoading.dispose();
+        bufferPolicyLoading = null;
         if (player != null) {
             shouldAutoPlay = player.getPlayWhenReady();
             updateResumePosition();
+            if (stats != null) stats.log();
+            stats = null;
             player.release();
             player = null;
             trackSelector = null;
@@ -47,15 +47,19 @@ import com.imagestudio.R;
 import com.imagestudio.SelectAlbumBuilder;
 import com.imagestudio.activities.base.SharedMediaActivity;
 import com.imagestudio.adapters.MediaPagerAdapter;
+import com.imagestudio.adapters.MediaPrefetcher;
 import com.imagestudio.animations.DepthPageTransformer;
 import com.imagestudio.data.Album;
 import com.imagestudio.data.AlbumSettings;
 import com.imagestudio.data.Media;
 import com.imagestudio.data.MediaHelper;
+import com.imagestudio.data.MediaSessions;
 import com.imagestudio.data.StorageHelper;
+import com.imagestudio.data.filter.IMediaFilter;
 import com.imagestudio.data.filter.MediaFilter;
 import com.imagestudio.data.provider.CPHelper;
 import com.imagestudio.data.sort.MediaComparators;
+import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.fragments.BaseMediaFragment;
 import com.imagestudio.fragments.ImageFragment;
 import com.imagestudio.util.AlertDialogsHelper;
@@ -71,9 +75,9 @@ import org.horaapps.liz.ColorPalette;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -91,6 +95,7 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
 
     private static final int SLIDE_SHOW_INTERVAL = 5000;
     private static final String ISLOCKED_ARG = "isLocked";
+    private static final int LAZY_PAGE_SIZE = 200;
 
     public static final String ACTION_OPEN_ALBUM = "com.imagestudio.intent.VIEW_ALBUM";
     public static final String ACTION_OPEN_ALBUM_LAZY = "com.imagestudio.intent.VIEW_ALBUM_LAZY";
@@ -99,6 +104,7 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
     public static final String EXTRA_ARGS_ALBUM = "args_album";
     public static final String EXTRA_ARGS_MEDIA = "args_media";
     public static final String EXTRA_ARGS_POSITION = "args_position";
+    public static final String EXTRA_ARGS_SESSION = "args_session";
 
     @BindView(R.id.photos_pager) HackyViewPager mViewPager;
     @BindView(R.id.PhotoPager_Layout) RelativeLayout activityBackground;
@@ -110,20 +116,27 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
 
     private Album album;
     private ArrayList<Media> media;
+    private int session = MediaSessions.NO_SESSION;
+    private boolean targetLoaded;
     private MediaPagerAdapter adapter;
     private boolean isSlideShowOn = false;
 
     private boolean useImageMenu;
 
+    /**
+     * Open the media of an album, the list is shared through {@link MediaSessions} and only
+     * the selected media is parceled, to find it again if the session is lost.
+     */
     public static void startActivity(@NonNull Context context,
                                      @Nullable Parcelable album,
-                                     @Nullable Serializable media,
+                                     @NonNull ArrayList<Media> media,
                                      int position) {
 
         Intent intent = new Intent(context, SingleMediaActivity.class);
         intent.putExtra(EXTRA_ARGS_ALBUM, album);
         intent.setAction(ACTION_OPEN_ALBUM);
-        intent.putExtra(EXTRA_ARGS_MEDIA, media);
+        intent.putExtra(EXTRA_ARGS_SESSION, MediaSessions.open(media));
+        intent.putExtra(EXTRA_ARGS_MEDIA, media.get(position));
         intent.putExtra(EXTRA_ARGS_POSITION, position);
         context.startActivity(intent);
     }
@@ -167,53 +180,93 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
     }
 
     private void loadAlbum(Intent intent) {
+        session = intent.getIntExtra(EXTRA_ARGS_SESSION, MediaSessions.NO_SESSION);
+        ArrayList<Media> sessionMedia = MediaSessions.get(session);
+        if (sessionMedia == null) {
+            // the process died since the activity was started, query the album again
+            loadAlbumsLazy(intent);
+            return;
+        }
+
         album = intent.getParcelableExtra(EXTRA_ARGS_ALBUM);
         position = intent.getIntExtra(EXTRA_ARGS_POSITION, 0);
-        media = intent.getParcelableArrayListExtra(EXTRA_ARGS_MEDIA);
+        media = sessionMedia;
     }
 
+    /**
+     * Show the tapped media right away and load the rest of the album around it.
+     *
+     * MediaStore albums are queried already sorted, so pages are appended as they come: the media
+     * before the tapped one show up once it is reached in the cursor, the following ones page by page.
+     * Other albums are sorted once when fully loaded.
+     */
     private void loadAlbumsLazy(Intent intent) {
         album = intent.getParcelableExtra(EXTRA_ARGS_ALBUM);
-        //position = intent.getIntExtra(EXTRA_ARGS_POSITION, 0);
-        Media m = intent.getParcelableExtra(EXTRA_ARGS_MEDIA);
+        Media target = intent.getParcelableExtra(EXTRA_ARGS_MEDIA);
         media = new ArrayList<>();
-        media.add(m);
+        media.add(target);
         position = 0;
+        targetLoaded = false;
 
-        ArrayList<Media> list = new ArrayList<>();
+        // only NUMERIC is a natural order the query can't give
+        boolean sortedByQuery = album.getId() != -1 && album.settings.getSortingMode() != SortingMode.NUMERIC;
+        IMediaFilter filter = MediaFilter.getFilter(album.filterMode());
+        ArrayList<Media> loaded = new ArrayList<>();
 
         Disposable disposable = CPHelper.getMedia(getApplicationContext(), album)
                 .subscribeOn(Schedulers.io())
+                .filter(filter::accept)
+                .buffer(LAZY_PAGE_SIZE)
                 .observeOn(AndroidSchedulers.mainThread())
-                .filter(media -> MediaFilter.getFilter(album.filterMode()).accept(media) && !media.equals(m))
-                .subscribe(ma -> {
-                            int i = Collections.binarySearch(
-                                    list, ma, MediaComparators.getComparator(album.settings));
-                            if (i < 0) i = ~i;
-                            list.add(i, ma);
+                .subscribe(page -> {
+                            if (targetLoaded) {
+                                media.addAll(page);
+                                adapter.notifyDataSetChanged();
+                                updatePageTitle(mViewPager.getCurrentItem());
+                                return;
+                            }
+
+                            loaded.addAll(page);
+                            int i = page.indexOf(target);
+                            if (sortedByQuery && i != -1)
+                                showLoaded(loaded, target, loaded.size() - page.size() + i);
                         },
                         throwable -> {
                             Log.wtf("asd", throwable);
                         },
                         () -> {
-                            int i = Collections.binarySearch(
-                                    list, m, MediaComparators.getComparator(album.settings));
-                            if (i < 0) i = ~i;
-
-                            list.add(i, m);
-                            media.clear();
-                            media.addAll(list);
-                            adapter.notifyDataSetChanged();
-                            position = i;
-                            mViewPager.setCurrentItem(position);
-
-                            updatePageTitle(position);
-
+                            if (targetLoaded) return;
+
+                            Comparator<Media> comparator = MediaComparators.getComparator(album.settings);
+                            if (!sortedByQuery) Collections.sort(loaded, comparator);
+                            int i = loaded.indexOf(target);
+                            if (i == -1) {
+                                // filtered out or not in MediaStore yet, keep it where it belongs
+                                i = Collections.binarySearch(loaded, target, comparator);
+                                if (i < 0) i = ~i;
+                                loaded.add(i, target);
+                            }
+                            showLoaded(loaded, target, i);
                         });
 
         disposeLater(disposable);
     }
 
+    /**
+     * Replace the single media shown while loading with the loaded ones, staying on it.
+     */
+    private void showLoaded(ArrayList<Media> loaded, Media target, int targetPosition) {
+        targetLoaded = true;
+        // keep the instance already on screen
+        loaded.set(targetPosition, target);
+        media.clear();
+        media.addAll(loaded);
+        adapter.notifyDataSetChanged();
+        position = targetPosition;
+        mViewPager.setCurrentItem(position, false);
+        updatePageTitle(position);
+    }
+
     private void loadUri(Uri uri) {
         album = new Album(uri.toString(), uri.getPath());
         album.settings = AlbumSettings.getDefaults();
@@ -263,6 +316,7 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
 
         updatePageTitle(position);
 
+        MediaPrefetcher.getInstance(this).prefetch(media, position);
         mViewPager.setAdapter(adapter);
         mViewPager.setCurrentItem(position);
 
@@ -279,6 +333,7 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
             public void onPageSelected(int position) {
                 SingleMediaActivity.this.position = position;
                 updatePageTitle(position);
+                MediaPrefetcher.getInstance(getApplicationContext()).prefetch(media, position);
 
                 // Invalidate the options menu only when we aren't using the correct menu
                 if (isCurrentMediaImage() == useImageMenu) return;
@@ -839,6 +894,8 @@ public class SingleMediaActivity extends SharedMediaActivity implements BaseMedi
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        // keep the session across configuration changes, the recreated activity gets the same intent
+        if (isFinishing()) MediaSessions.close(session);
         handler.removeCallbacks(slideShowRunnable);
         handler = null;
     }
@@ -18,6 +18,7 @@ import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.Toast;
 
+import com.imagestudio.IndexMetadataJob;
 import com.imagestudio.LookForMediaJob;
 import com.imagestudio.R;
 import com.imagestudio.activities.base.SharedMediaActivity;
@@ -94,6 +95,8 @@ public class SplashScreen extends SharedMediaActivity {
     }
 
     private void start() {
+        IndexMetadataJob.schedule(getApplicationContext());
+
         Intent intent = new Intent(SplashScreen.this, MainActivity.class);
 
         if (pickMode) {
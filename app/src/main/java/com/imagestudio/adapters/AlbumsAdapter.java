@@ -21,6 +21,7 @@ import com.imagestudio.R;
 import com.imagestudio.data.Album;
 import com.imagestudio.data.AlbumsHelper;
 import com.imagestudio.data.Media;
+import com.imagestudio.data.posters.VideoPoster;
 import com.imagestudio.data.sort.AlbumsComparators;
 import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.data.sort.SortingOrder;
@@ -283,7 +284,7 @@ public class AlbumsAdapter extends ThemedAdapter<AlbumsAdapter.ViewHolder> {
                 .diskCacheStrategy(DiskCacheStrategy.RESOURCE);
 
         Glide.with(holder.picture.getContext())
-                .load(f.getPath())
+                .load(f.getMimeType() != null && f.isVideo() ? new VideoPoster(f) : f.getPath())
                 .apply(options)
                 .into(holder.picture);
 
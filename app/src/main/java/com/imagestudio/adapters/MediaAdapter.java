@@ -3,9 +3,12 @@ package com.imagestudio.adapters;
 import android.content.Context;
 import android.graphics.Color;
 import android.graphics.PorterDuff;
+import android.graphics.drawable.Animatable;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -16,16 +19,20 @@ import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.DecodeFormat;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.DrawableImageViewTarget;
+import com.bumptech.glide.request.transition.Transition;
 import com.mikepenz.community_material_typeface_library.CommunityMaterial;
 import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 
 import com.imagestudio.R;
 import com.imagestudio.data.Album;
 import com.imagestudio.data.Media;
+import com.imagestudio.data.posters.VideoPoster;
 import com.imagestudio.data.sort.MediaComparators;
 import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.data.sort.SortingOrder;
 import com.imagestudio.items.ActionsListener;
+import com.imagestudio.util.preferences.Prefs;
 import com.imagestudio.views.SquareRelativeLayout;
 import org.horaapps.liz.ThemeHelper;
 import org.horaapps.liz.ThemedAdapter;
@@ -33,6 +40,7 @@ import org.horaapps.liz.ThemedViewHolder;
 import org.horaapps.liz.ui.ThemedIcon;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -43,10 +51,15 @@ import butterknife.ButterKnife;
 /**
  * Adapter used to display Media Items.
  *
+ * Animated thumbnails stay on their first frame, only the {@link #MAX_ANIMATED} GIFs nearest to the
+ * center of the grid play, and only while it is not scrolling.
+ *
  * TODO: This class needs a major cleanup. Remove code from onBindViewHolder!
  */
 public class MediaAdapter extends ThemedAdapter<MediaAdapter.ViewHolder> {
 
+    private static final int MAX_ANIMATED = 2;
+
     private final ArrayList<Media> media;
     private int selectedCount = 0;
 
@@ -58,6 +71,15 @@ public class MediaAdapter extends ThemedAdapter<MediaAdapter.ViewHolder> {
 
     private boolean isSelecting = false;
 
+    private RecyclerView recyclerView = null;
+    private boolean animationsPending = false;
+    private final RecyclerView.OnScrollListener animationsListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+            updateAnimations();
+        }
+    };
+
     public MediaAdapter(Context context, SortingMode sortingMode, SortingOrder sortingOrder, ActionsListener actionsListener) {
         super(context);
         media = new ArrayList<>();
@@ -129,6 +151,17 @@ public class MediaAdapter extends ThemedAdapter<MediaAdapter.ViewHolder> {
         startSelection();
     }
 
+    /**
+     * Add the given media to the selection.
+     */
+    public void select(Collection<Media> toSelect) {
+        for (int i = 0; i < media.size(); i++)
+            if (toSelect.contains(media.get(i)) && media.get(i).setSelected(true))
+                notifyItemChanged(i);
+        invalidateSelectedCount();
+        if (selectedCount > 0 && !isSelecting) startSelection();
+    }
+
     public boolean clearSelected() {
         boolean changed = true;
         for (int i = 0; i < media.size(); i++) {
@@ -187,11 +220,13 @@ public class MediaAdapter extends ThemedAdapter<MediaAdapter.ViewHolder> {
                 .diskCacheStrategy(DiskCacheStrategy.RESOURCE);
 
 
+        holder.thumbnail.setPlaying(false);
         Glide.with(holder.imageView.getContext())
-                .load(f.getUri())
+                .load(VideoPoster.model(f))
                 .apply(options)
                 .thumbnail(0.5f)
-                .into(holder.imageView);
+                .into(holder.thumbnail);
+        if (f.isGif()) scheduleAnimationsUpdate();
 
         if (f.isVideo()) {
             holder.icon.setIcon(GoogleMaterial.Icon.gmd_play_circle_filled);
@@ -350,6 +385,103 @@ public class MediaAdapter extends ThemedAdapter<MediaAdapter.ViewHolder> {
         return media.size();
     }
 
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        super.onAttachedToRecyclerView(recyclerView);
+        this.recyclerView = recyclerView;
+        recyclerView.addOnScrollListener(animationsListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(animationsListener);
+        this.recyclerView = null;
+        super.onDetachedFromRecyclerView(recyclerView);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        holder.thumbnail.setPlaying(false);
+        super.onViewRecycled(holder);
+    }
+
+    /**
+     * Update the animations once the pending layout is done, binding many cells costs a single pass.
+     */
+    private void scheduleAnimationsUpdate() {
+        if (recyclerView == null || animationsPending) return;
+        animationsPending = true;
+        recyclerView.post(() -> {
+            animationsPending = false;
+            updateAnimations();
+        });
+    }
+
+    /**
+     * Pause every animated thumbnail while scrolling, otherwise play the GIFs mostly visible
+     * and nearest to the center.
+     */
+    private void updateAnimations() {
+        if (recyclerView == null) return;
+        boolean idle = recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_IDLE && Prefs.animationsEnabled();
+        float centerX = recyclerView.getWidth() / 2f, centerY = recyclerView.getHeight() / 2f;
+
+        ArrayList<ViewHolder> gifs = new ArrayList<>();
+        for (int i = 0; i < recyclerView.getChildCount(); i++) {
+            View child = recyclerView.getChildAt(i);
+            ViewHolder holder = (ViewHolder) recyclerView.getChildViewHolder(child);
+            int position = holder.getAdapterPosition();
+            if (position == RecyclerView.NO_POSITION || !media.get(position).isGif()) continue;
+
+            int visibleHeight = Math.min(child.getBottom(), recyclerView.getHeight()) - Math.max(child.getTop(), 0);
+            if (idle && visibleHeight * 2 >= child.getHeight()) gifs.add(holder);
+            else holder.thumbnail.setPlaying(false);
+        }
+
+        Collections.sort(gifs, (a, b) -> Float.compare(
+                distance(a.itemView, centerX, centerY), distance(b.itemView, centerX, centerY)));
+        for (int i = 0; i < gifs.size(); i++)
+            gifs.get(i).thumbnail.setPlaying(i < MAX_ANIMATED);
+    }
+
+    private static float distance(View view, float x, float y) {
+        float dx = (view.getLeft() + view.getRight()) / 2f - x;
+        float dy = (view.getTop() + view.getBottom()) / 2f - y;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Keeps animated thumbnails on their first frame until the adapter lets them play.
+     */
+    private static class ThumbnailTarget extends DrawableImageViewTarget {
+
+        private boolean playing = false;
+
+        ThumbnailTarget(ImageView view) {
+            super(view);
+        }
+
+        void setPlaying(boolean playing) {
+            this.playing = playing;
+            Drawable drawable = view.getDrawable();
+            if (drawable instanceof Animatable) {
+                if (playing) ((Animatable) drawable).start();
+                else ((Animatable) drawable).stop();
+            }
+        }
+
+        @Override
+        public void onResourceReady(@NonNull Drawable resource, @Nullable Transition<? super Drawable> transition) {
+            super.onResourceReady(resource, transition);
+            if (!playing && resource instanceof Animatable) ((Animatable) resource).stop();
+        }
+
+        @Override
+        public void onStart() {
+            if (playing) super.onStart();
+        }
+    }
+
     static class ViewHolder extends ThemedViewHolder {
         @BindView(R.id.photo_preview)
         ImageView imageView;
@@ -362,9 +494,12 @@ public class MediaAdapter extends ThemedAdapter<MediaAdapter.ViewHolder> {
         @BindView(R.id.media_card_layout)
         SquareRelativeLayout layout;
 
+        final ThumbnailTarget thumbnail;
+
         ViewHolder(View view) {
             super(view);
             ButterKnife.bind(this, view);
+            thumbnail = new ThumbnailTarget(imageView);
         }
 
         @Override
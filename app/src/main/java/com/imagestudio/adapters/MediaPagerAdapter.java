@@ -9,6 +9,7 @@ import android.util.SparseArray;
 import android.view.ViewGroup;
 
 import com.imagestudio.data.Media;
+import com.imagestudio.fragments.BaseMediaFragment;
 import com.imagestudio.fragments.GifFragment;
 import com.imagestudio.fragments.ImageFragment;
 import com.imagestudio.fragments.VideoFragment;
@@ -63,6 +64,14 @@ public class MediaPagerAdapter extends FragmentStatePagerAdapter {
 
     @Override
     public int getItemPosition(@NonNull Object object) {
+        // keep the pages still showing the media at their position, so appending media doesn't rebuild them
+        int index = registeredFragments.indexOfValue((Fragment) object);
+        if (index >= 0 && object instanceof BaseMediaFragment) {
+            int position = registeredFragments.keyAt(index);
+            Media shown = ((BaseMediaFragment) object).getMedia();
+            if (position < media.size() && shown != null && shown.equals(media.get(position)))
+                return PagerAdapter.POSITION_UNCHANGED;
+        }
         return PagerAdapter.POSITION_NONE;
     }
 
@@ -0,0 +1,160 @@
+package com.imagestudio.adapters;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Process;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.imagestudio.data.Media;
+import com.imagestudio.data.metadata.OrientationService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Decodes ahead of time a screen sized preview and the orientation of the images around the one
+ * shown in the viewer, so a page swiped in shows a sharp picture at once while its tiles load.
+ */
+public class MediaPrefetcher {
+
+    private static final String TAG = "MediaPrefetcher";
+
+    /* how many pages on each side of the current one are prefetched */
+    private static final int DISTANCE = 2;
+
+    public static class Preview {
+        public final Bitmap bitmap;
+        public final int width, height, orientation;
+
+        Preview(Bitmap bitmap, int width, int height, int orientation) {
+            this.bitmap = bitmap;
+            this.width = width;
+            this.height = height;
+            this.orientation = orientation;
+        }
+    }
+
+    private static MediaPrefetcher mInstance = null;
+
+    private final Context context;
+    private final LruCache<String, Preview> previews;
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private final ExecutorService decoders = Executors.newFixedThreadPool(2, runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, TAG));
+
+    private MediaPrefetcher(Context context) {
+        this.context = context;
+        // enough for the prefetched pages plus the current one, bounded by the heap
+        int maxSize = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, 48L * 1024 * 1024);
+        previews = new LruCache<String, Preview>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Preview preview) {
+                return preview.bitmap.getByteCount();
+            }
+        };
+    }
+
+    public static synchronized MediaPrefetcher getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new MediaPrefetcher(context.getApplicationContext());
+        return mInstance;
+    }
+
+    private static String key(Media media) {
+        return media.getUri() + "_" + media.getDateModified();
+    }
+
+    /**
+     * @return the preview of the media if it has been decoded already
+     */
+    @Nullable
+    public Preview get(Media media) {
+        return previews.get(key(media));
+    }
+
+    /**
+     * Decode in background the previews missing around the given position, nearest pages first.
+     */
+    public void prefetch(List<Media> media, int position) {
+        for (int distance = 0; distance <= DISTANCE; distance++) {
+            submit(media, position + distance);
+            if (distance > 0) submit(media, position - distance);
+        }
+    }
+
+    private void submit(List<Media> media, int position) {
+        if (position < 0 || position >= media.size()) return;
+
+        Media m = media.get(position);
+        if (!m.isImage() || m.isGif()) return;
+
+        String key = key(m);
+        if (previews.get(key) != null || !pending.add(key)) return;
+
+        decoders.execute(() -> {
+            try {
+                Preview preview = decode(m);
+                if (preview != null) previews.put(key, preview);
+            } catch (OutOfMemoryError e) {
+                Log.w(TAG, "No memory left for the preview of " + m.getPath());
+                previews.evictAll();
+            } finally {
+                pending.remove(key);
+            }
+        });
+    }
+
+    @Nullable
+    private Preview decode(Media media) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(media, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        int width = options.outWidth, height = options.outHeight;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(width, height);
+        // jpegs have no alpha, halve the memory
+        options.inPreferredConfig = "image/jpeg".equals(media.getMimeType()) ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = decode(media, options);
+        if (bitmap == null) return null;
+
+        return new Preview(bitmap, width, height, OrientationService.getInstance(context).resolve(media));
+    }
+
+    /**
+     * The biggest power of 2 keeping the image at least as big as the screen, whatever the rotation.
+     */
+    private int sampleSize(int width, int height) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int screenLong = Math.max(metrics.widthPixels, metrics.heightPixels);
+        int screenShort = Math.min(metrics.widthPixels, metrics.heightPixels);
+        int imageLong = Math.max(width, height), imageShort = Math.min(width, height);
+
+        int sampleSize = 1;
+        while (imageLong / (sampleSize * 2) >= screenLong && imageShort / (sampleSize * 2) >= screenShort)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    @Nullable
+    private Bitmap decode(Media media, BitmapFactory.Options options) {
+        try (InputStream in = context.getContentResolver().openInputStream(media.getUri())) {
+            return in != null ? BitmapFactory.decodeStream(in, null, options) : null;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
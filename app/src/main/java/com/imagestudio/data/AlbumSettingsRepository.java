@@ -0,0 +1,172 @@
+package com.imagestudio.data;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.imagestudio.data.sort.SortingMode;
+import com.imagestudio.data.sort.SortingOrder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+
+/**
+ * Album settings served from memory.
+ *
+ * All the settings are read from {@link HandlingAlbums} once, changes are applied to the cached copy
+ * right away and written back later from a background thread: every change made within
+ * {@link #FLUSH_DELAY} ms is coalesced per album and stored in a single transaction.
+ * Call {@link #flush()} when the ui goes to the background so pending changes hit the disk.
+ *
+ * The cached settings are only touched under the lock, the ui gets its own copies.
+ */
+public class AlbumSettingsRepository {
+
+    private static final long FLUSH_DELAY = 500;
+
+    private static AlbumSettingsRepository mInstance = null;
+
+    private final HandlingAlbums db;
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+
+    private volatile HashMap<String, AlbumSettings> settings = null;
+    private final HashSet<String> dirty = new HashSet<>();
+    private ScheduledFuture<?> pendingFlush = null;
+
+    private AlbumSettingsRepository(Context context) {
+        db = HandlingAlbums.getInstance(context);
+    }
+
+    public static synchronized AlbumSettingsRepository getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new AlbumSettingsRepository(context.getApplicationContext());
+        return mInstance;
+    }
+
+    private interface Change {
+        void apply(AlbumSettings albumSettings);
+    }
+
+    /**
+     * Load the settings if needed, the query runs outside the lock so the setters never wait on it.
+     */
+    private HashMap<String, AlbumSettings> settings() {
+        HashMap<String, AlbumSettings> loaded = settings;
+        if (loaded != null) return loaded;
+
+        loaded = db.getAllSettings();
+        synchronized (this) {
+            if (settings == null) settings = loaded;
+            return settings;
+        }
+    }
+
+    /**
+     * Get a copy of the settings of an album, an untracked album gets the defaults and is stored
+     * with the next flush. The first call loads all the settings, make it off the main thread.
+     */
+    @NonNull public AlbumSettings getSettings(String path) {
+        HashMap<String, AlbumSettings> settings = settings();
+        synchronized (this) {
+            return copy(cached(settings, path));
+        }
+    }
+
+    private AlbumSettings cached(HashMap<String, AlbumSettings> settings, String path) {
+        AlbumSettings albumSettings = settings.get(path);
+        if (albumSettings == null) {
+            albumSettings = AlbumSettings.getDefaults();
+            settings.put(path, albumSettings);
+            markDirty(path);
+        }
+        return albumSettings;
+    }
+
+    private static AlbumSettings copy(AlbumSettings albumSettings) {
+        return new AlbumSettings(
+                albumSettings.coverPath,
+                albumSettings.sortingMode,
+                albumSettings.sortingOrder,
+                albumSettings.pinned ? 1 : 0);
+    }
+
+    /**
+     * Attach the cached settings to every album emitted by the source.
+     */
+    public Observable<Album> withSettings(Observable<Album> albums) {
+        return Observable.defer(() -> {
+            settings();
+            return albums.map(album -> album.withSettings(getSettings(album.getPath())));
+        });
+    }
+
+    public void setPinned(String path, boolean pinned) {
+        update(path, albumSettings -> albumSettings.pinned = pinned);
+    }
+
+    public void setCover(String path, String mediaPath) {
+        update(path, albumSettings -> albumSettings.coverPath = mediaPath);
+    }
+
+    public void setSortingMode(String path, SortingMode sortingMode) {
+        update(path, albumSettings -> albumSettings.sortingMode = sortingMode.getValue());
+    }
+
+    public void setSortingOrder(String path, SortingOrder sortingOrder) {
+        update(path, albumSettings -> albumSettings.sortingOrder = sortingOrder.getValue());
+    }
+
+    /**
+     * Apply a change to the cached settings, or on the writer thread once they are loaded
+     * if they aren't yet, so the ui never runs the query.
+     */
+    private void update(String path, Change change) {
+        if (settings == null) writer.execute(() -> apply(path, change));
+        else apply(path, change);
+    }
+
+    private void apply(String path, Change change) {
+        HashMap<String, AlbumSettings> settings = settings();
+        synchronized (this) {
+            change.apply(cached(settings, path));
+            markDirty(path);
+        }
+    }
+
+    private void markDirty(String path) {
+        dirty.add(path);
+        if (pendingFlush == null)
+            pendingFlush = writer.schedule(this::write, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Write the pending changes now, without waiting for the coalescing delay. The write is
+     * committed from the writer thread, the caller doesn't wait for it. Changes still queued on
+     * the writer thread schedule their own write.
+     */
+    public synchronized void flush() {
+        if (dirty.isEmpty()) return;
+        if (pendingFlush != null)
+            pendingFlush.cancel(false);
+        pendingFlush = writer.schedule(this::write, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private void write() {
+        HashMap<String, AlbumSettings> batch;
+        synchronized (this) {
+            pendingFlush = null;
+            if (dirty.isEmpty()) return;
+
+            batch = new HashMap<>(dirty.size());
+            for (String path : dirty)
+                batch.put(path, copy(settings.get(path)));
+            dirty.clear();
+        }
+        db.putSettings(batch);
+    }
+}
@@ -4,8 +4,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.media.ThumbnailUtils;
-import android.provider.MediaStore;
 import android.support.annotation.NonNull;
 import android.widget.Toast;
 
@@ -13,15 +11,21 @@ import com.orhanobut.hawk.Hawk;
 
 import com.imagestudio.R;
 import com.imagestudio.activities.SplashScreen;
+import com.imagestudio.data.posters.VideoPosterStore;
 import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.data.sort.SortingOrder;
 import com.imagestudio.util.preferences.Prefs;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.schedulers.Schedulers;
+
 import static com.imagestudio.data.MediaHelper.scanFile;
 import static com.imagestudio.util.BitmapUtils.addWhiteBorder;
 import static com.imagestudio.util.BitmapUtils.getCroppedBitmap;
@@ -32,38 +36,49 @@ import static com.imagestudio.util.BitmapUtils.getCroppedBitmap;
 
 public class AlbumsHelper {
 
+    /**
+     * Install a launcher shortcut for every album. The covers are decoded on the io scheduler,
+     * video posters may need an extraction, and the shortcuts are sent from the main thread.
+     * Stops at the first cover that can't be decoded.
+     */
     public static void createShortcuts(Context context, List<Album> albums) {
-        for (Album selectedAlbum : albums) {
-
-            Intent shortcutIntent;
-            shortcutIntent = new Intent(context, SplashScreen.class);
-            shortcutIntent.setAction(SplashScreen.ACTION_OPEN_ALBUM);
-            shortcutIntent.putExtra("albumPath", selectedAlbum.getPath());
-            shortcutIntent.putExtra("albumId", selectedAlbum.getId());
-            shortcutIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            shortcutIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-
-            Intent addIntent = new Intent();
-            addIntent.putExtra(Intent.EXTRA_SHORTCUT_INTENT, shortcutIntent);
-            addIntent.putExtra(Intent.EXTRA_SHORTCUT_NAME, selectedAlbum.getName());
-
-            Media coverAlbum = selectedAlbum.getCover();
-            File image = new File(coverAlbum.getPath());
-            Bitmap bitmap = coverAlbum.isVideo() ? ThumbnailUtils.createVideoThumbnail(coverAlbum.getPath(), MediaStore.Images.Thumbnails.MINI_KIND)
-                    : BitmapFactory.decodeFile(image.getAbsolutePath(), new BitmapFactory.Options());
-
-            if (bitmap == null) {
-                Toast.makeText(context, R.string.error_thumbnail, Toast.LENGTH_SHORT).show();
-                // TODO: 12/31/16
-                return;
-            }
+        Context appContext = context.getApplicationContext();
+        Observable.fromIterable(new ArrayList<>(albums))
+                .map(album -> shortcut(appContext, album))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(appContext::sendBroadcast, throwable -> {
+                    Toast.makeText(appContext, R.string.error_thumbnail, Toast.LENGTH_SHORT).show();
+                    // TODO: 12/31/16
+                });
+    }
 
-            bitmap = Bitmap.createScaledBitmap(getCroppedBitmap(bitmap), 128, 128, false);
-            addIntent.putExtra(Intent.EXTRA_SHORTCUT_ICON, addWhiteBorder(bitmap, 5));
+    private static Intent shortcut(Context context, Album selectedAlbum) throws IOException {
+        Intent shortcutIntent;
+        shortcutIntent = new Intent(context, SplashScreen.class);
+        shortcutIntent.setAction(SplashScreen.ACTION_OPEN_ALBUM);
+        shortcutIntent.putExtra("albumPath", selectedAlbum.getPath());
+        shortcutIntent.putExtra("albumId", selectedAlbum.getId());
+        shortcutIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        shortcutIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
 
-            addIntent.setAction("com.android.launcher.action.INSTALL_SHORTCUT");
-            context.sendBroadcast(addIntent);
-        }
+        Intent addIntent = new Intent();
+        addIntent.putExtra(Intent.EXTRA_SHORTCUT_INTENT, shortcutIntent);
+        addIntent.putExtra(Intent.EXTRA_SHORTCUT_NAME, selectedAlbum.getName());
+
+        Media coverAlbum = selectedAlbum.getCover();
+        File image = new File(coverAlbum.getPath());
+        Bitmap bitmap = coverAlbum.isVideo() ? VideoPosterStore.getInstance(context).getBitmap(coverAlbum)
+                : BitmapFactory.decodeFile(image.getAbsolutePath(), new BitmapFactory.Options());
+
+        if (bitmap == null)
+            throw new IOException("Can't decode the cover of " + selectedAlbum.getPath());
+
+        bitmap = Bitmap.createScaledBitmap(getCroppedBitmap(bitmap), 128, 128, false);
+        addIntent.putExtra(Intent.EXTRA_SHORTCUT_ICON, addWhiteBorder(bitmap, 5));
+
+        addIntent.setAction("com.android.launcher.action.INSTALL_SHORTCUT");
+        return addIntent;
     }
 
     @NonNull
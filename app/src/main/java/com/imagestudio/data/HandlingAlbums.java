@@ -5,22 +5,31 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.support.annotation.NonNull;
 
+import com.imagestudio.data.duplicates.SimilarMediaFinder;
+import com.imagestudio.data.metadata.MetadataCache;
+import com.imagestudio.data.metadata.PlacesIndex;
+import com.imagestudio.data.metadata.SearchIndex;
 import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.data.sort.SortingOrder;
 import com.imagestudio.util.StringUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 
 /**
  * Created by dnld on 27/04/16.
  */
 public class HandlingAlbums extends SQLiteOpenHelper {
 
-    private static final int DATABASE_VERSION = 12;
+    /* first version with the current folders layout, older ones are rebuilt from scratch */
+    private static final int BASE_VERSION = 12;
+    private static final int DATABASE_VERSION = 17;
     private static final String DATABASE_NAME = "folders.db";
     private static final String TABLE_ALBUMS = "folders";
 
@@ -37,17 +46,28 @@ public class HandlingAlbums extends SQLiteOpenHelper {
 
     private static HandlingAlbums mInstance = null;
 
+    /* precompiled statements for the hot paths, bound to the long-lived connection */
+    private SQLiteStatement insertDefaults;
+    private SQLiteStatement updateStatus;
+    private SQLiteStatement countStatus;
+
     private HandlingAlbums(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
     }
 
-    public static HandlingAlbums getInstance(Context context) {
+    public static synchronized HandlingAlbums getInstance(Context context) {
         if(mInstance == null)
-            mInstance = new HandlingAlbums(context);
+            mInstance = new HandlingAlbums(context.getApplicationContext());
         return mInstance;
     }
 
     @Override public void onCreate(SQLiteDatabase db) {
+        createAlbumsTable(db);
+        onUpgrade(db, BASE_VERSION, DATABASE_VERSION);
+    }
+
+    private static void createAlbumsTable(SQLiteDatabase db) {
         db.execSQL("CREATE TABLE " +
                 TABLE_ALBUMS + "(" +
                 ALBUM_PATH + " TEXT," +
@@ -61,27 +81,100 @@ public class HandlingAlbums extends SQLiteOpenHelper {
         db.execSQL(String.format("CREATE UNIQUE INDEX idx_path ON %s (%s)", TABLE_ALBUMS, ALBUM_PATH));
     }
 
+    /**
+     * Bring the schema from {@code oldVersion} to {@code newVersion} one step at a time,
+     * keeping the stored data. A fresh database is created at {@link #BASE_VERSION} and goes
+     * through the same steps, so every schema change only needs its own case in {@link #migrate}.
+     */
     @Override public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ALBUMS);
-        db.execSQL("DROP INDEX IF EXISTS idx_path");
-        onCreate(db);
+        if (oldVersion < BASE_VERSION) {
+            // NOTE: the layout of those versions is unknown, nothing can be migrated
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_ALBUMS);
+            db.execSQL("DROP INDEX IF EXISTS idx_path");
+            createAlbumsTable(db);
+            oldVersion = BASE_VERSION;
+        }
+
+        for (int version = oldVersion + 1; version <= newVersion; version++)
+            migrate(db, version);
     }
 
-    public void excludeAlbum(String path) {
-        SQLiteDatabase db = getWritableDatabase();
-        excludeAlbum(db, Album.withPath(path));
-        db.close();
+    /**
+     * Apply the changes introduced by the given schema version.
+     * Migrations must only add to the schema or move data, never drop what users stored.
+     */
+    private static void migrate(SQLiteDatabase db, int version) {
+        switch (version) {
+            case 13:
+                // excluded and white-listed folders are looked up by status
+                db.execSQL(String.format("CREATE INDEX IF NOT EXISTS idx_status ON %s (%s)", TABLE_ALBUMS, ALBUM_STATUS));
+                break;
+            case 14:
+                MetadataCache.createTable(db);
+                break;
+            case 15:
+                PlacesIndex.createIndex(db);
+                break;
+            case 16:
+                SimilarMediaFinder.createTable(db);
+                break;
+            case 17:
+                SearchIndex.createIndex(db);
+                break;
+        }
+    }
+
+    /**
+     * The connection is opened once and kept for the whole process life,
+     * {@link SQLiteOpenHelper} hands back the same instance on every call.
+     * Never close it, the statements below are compiled against it.
+     */
+    private SQLiteDatabase db() {
+        return getWritableDatabase();
     }
 
-    private void excludeAlbum(SQLiteDatabase db, Album album) {
-        changeSatusAlbum(db, album, EXCLUDED);
+    private SQLiteStatement insertDefaults() {
+        if (insertDefaults == null)
+            insertDefaults = db().compileStatement(String.format(
+                    "INSERT OR IGNORE INTO %s (%s, %s, %s, %s, %s) VALUES (?, ?, 0, ?, ?)",
+                    TABLE_ALBUMS, ALBUM_PATH, ALBUM_ID, ALBUM_PINNED, ALBUM_SORTING_MODE, ALBUM_SORTING_ORDER));
+        return insertDefaults;
+    }
+
+    private SQLiteStatement updateStatus() {
+        if (updateStatus == null)
+            updateStatus = db().compileStatement(String.format(
+                    "UPDATE %s SET %s=? WHERE %s=?", TABLE_ALBUMS, ALBUM_STATUS, ALBUM_PATH));
+        return updateStatus;
+    }
+
+    private SQLiteStatement countStatus() {
+        if (countStatus == null)
+            countStatus = db().compileStatement(String.format(
+                    "SELECT count(*) FROM %s WHERE %s=?", TABLE_ALBUMS, ALBUM_STATUS));
+        return countStatus;
+    }
+
+    /**
+     * Track the album if it is not tracked yet, a no-op otherwise.
+     */
+    private synchronized void insertDefaults(String path, long id) {
+        SQLiteStatement statement = insertDefaults();
+        statement.bindString(1, path);
+        statement.bindLong(2, id);
+        statement.bindLong(3, SortingMode.DATE.getValue());
+        statement.bindLong(4, SortingOrder.DESCENDING.getValue());
+        statement.executeInsert();
+        statement.clearBindings();
+    }
+
+    public void excludeAlbum(String path) {
+        changeSatusAlbum(Album.withPath(path), EXCLUDED);
         // TODO: 3/26/17 notify
     }
 
     public void addFolderToWhiteList(String path) {
-        SQLiteDatabase db = getWritableDatabase();
-        changeSatusAlbum(db, Album.withPath(path), INCLUDED);
-        db.close();
+        changeSatusAlbum(Album.withPath(path), INCLUDED);
     }
 
     public ArrayList<String> getExcludedFolders(Context context) {
@@ -95,41 +188,28 @@ public class HandlingAlbums extends SQLiteOpenHelper {
         return list;
     }
 
-    private void changeSatusAlbum(SQLiteDatabase db, Album album, int status) {
-        ContentValues values = new ContentValues();
-        values.put(ALBUM_STATUS, status);
-        if (exist(db, album.getPath())) {
-            db.update(TABLE_ALBUMS, values, ALBUM_PATH+"=?", new String[]{ album.getPath() });
-        } else {
-            values.put(ALBUM_PATH, album.getPath());
-            values.put(ALBUM_PINNED, 0);
-            values.put(ALBUM_SORTING_MODE, SortingMode.DATE.getValue());
-            values.put(ALBUM_SORTING_ORDER, SortingOrder.DESCENDING.getValue());
-            values.put(ALBUM_ID, album.getId());
-            db.insert(TABLE_ALBUMS, null, values);
+    private synchronized void changeSatusAlbum(Album album, int status) {
+        SQLiteDatabase db = db();
+        db.beginTransaction();
+        try {
+            insertDefaults(album.getPath(), album.getId());
+            SQLiteStatement statement = updateStatus();
+            statement.bindLong(1, status);
+            statement.bindString(2, album.getPath());
+            statement.executeUpdateDelete();
+            statement.clearBindings();
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
     }
 
-    public static ContentValues getDefaults(String path) {
-        ContentValues values = new ContentValues();
-        values.put(ALBUM_PATH, path);
-        values.put(ALBUM_PINNED, 0);
-        values.put(ALBUM_SORTING_MODE, SortingMode.DATE.getValue());
-        values.put(ALBUM_SORTING_ORDER, SortingOrder.DESCENDING.getValue());
-        values.put(ALBUM_ID, -1);
-        return values;
-    }
-
-
     public void clearStatusFolder(String path) {
-        SQLiteDatabase db = getWritableDatabase();
         ContentValues values = new ContentValues();
         values.put(ALBUM_STATUS, "");
-        if (exist(db, path))
-            db.update(TABLE_ALBUMS, values, ALBUM_PATH+"=?", new String[]{ path });
+        db().update(TABLE_ALBUMS, values, ALBUM_PATH+"=?", new String[]{ path });
         // NOTE: it make no difference if the folder was included
         //excludedFolders.remove(path);
-        db.close();
     }
 
     /**
@@ -139,96 +219,76 @@ public class HandlingAlbums extends SQLiteOpenHelper {
      */
     public ArrayList<String> getFolders(int status) {
         ArrayList<String> list = new ArrayList<>();
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor cur = db.query(TABLE_ALBUMS, new String[]{ALBUM_PATH}, ALBUM_STATUS + "=?", new String[]{String.valueOf(status)}, null, null, null);
+        Cursor cur = db().query(TABLE_ALBUMS, new String[]{ALBUM_PATH}, ALBUM_STATUS + "=?", new String[]{String.valueOf(status)}, null, null, null);
         if (cur.moveToFirst())
             do list.add(cur.getString(0)); while (cur.moveToNext());
         cur.close();
-        db.close();
         return list;
     }
 
-    public int getFoldersCount(int status) {
-        int c = 0;
-        SQLiteDatabase db = getReadableDatabase();
-        Cursor cur = db.query(TABLE_ALBUMS, new String[]{"count(*)"}, ALBUM_STATUS + "=?", new String[]{String.valueOf(status)}, null, null, null);
-        if (cur.moveToFirst())
-            c = cur.getInt(0);
-        cur.close();
-        db.close();
+    public synchronized int getFoldersCount(int status) {
+        SQLiteStatement statement = countStatus();
+        statement.bindLong(1, status);
+        int c = (int) statement.simpleQueryForLong();
+        statement.clearBindings();
         return c;
     }
 
-    private static boolean exist(SQLiteDatabase db, String path) {
-        Cursor cur = db.rawQuery(
-                String.format("SELECT EXISTS(SELECT 1 FROM %s WHERE %s=? LIMIT 1)", TABLE_ALBUMS, ALBUM_PATH),
-                new String[]{ path });
-        boolean tracked = cur.moveToFirst() &&  cur.getInt(0) == 1;
-        cur.close();
-        return  tracked;
-    }
-
-    public void setPined(String path, boolean pinned) {
-        ContentValues values = new ContentValues();
-        values.put(ALBUM_PINNED, pinned ? 1 : 0);
-        setValue(path, values);
-    }
-
-    public void setCover(String path, String mediaPath) {
-        ContentValues values = new ContentValues();
-        values.put(ALBUM_COVER_PATH, mediaPath);
-        setValue(path, values);
-    }
-
-    public void setSortingMode(String path, int column) {
-        ContentValues values = new ContentValues();
-        values.put(ALBUM_SORTING_MODE, column);
-        setValue(path, values);
-    }
+    /**
+     * Load the settings of every tracked album with a single query.
+     *
+     * @return the settings keyed by album path
+     */
+    @NonNull public HashMap<String, AlbumSettings> getAllSettings() {
+        HashMap<String, AlbumSettings> settings = new HashMap<>();
+        Cursor cursor = db().query(
+                TABLE_ALBUMS,
+                StringUtils.asArray(
+                        ALBUM_PATH,
+                        ALBUM_COVER_PATH,
+                        ALBUM_SORTING_MODE,
+                        ALBUM_SORTING_ORDER,
+                        ALBUM_PINNED),
+                null, null, null, null, null);
 
-    public void setSortingOrder(String path, int sortingOrder) {
-        ContentValues values = new ContentValues();
-        values.put(ALBUM_SORTING_ORDER, sortingOrder);
-        setValue(path, values);
+        try {
+            while (cursor.moveToNext())
+                settings.put(cursor.getString(0), new AlbumSettings(
+                        cursor.getString(1),
+                        cursor.getInt(2),
+                        cursor.getInt(3),
+                        cursor.getInt(4)));
+        } finally {
+            cursor.close();
+        }
+        return settings;
     }
 
-    private void setValue(String path, ContentValues values) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        db.update(TABLE_ALBUMS, values, ALBUM_PATH+"=?", new String[]{ path });
-        db.close();
-    }
+    /**
+     * Store the given settings in one transaction, tracking the albums that are not known yet.
+     *
+     * @param settings the settings keyed by album path
+     */
+    public synchronized void putSettings(Map<String, AlbumSettings> settings) {
+        if (settings.isEmpty()) return;
 
-    @NonNull public static AlbumSettings getSettings(SQLiteDatabase db, String path) {
-        Cursor cursor = null;
+        SQLiteDatabase db = db();
+        db.beginTransaction();
         try {
-            if (exist(db, path)) {
-                cursor = db.query(
-                        TABLE_ALBUMS,
-                        StringUtils.asArray(
-                                ALBUM_COVER_PATH,
-                                ALBUM_SORTING_MODE,
-                                ALBUM_SORTING_ORDER,
-                                ALBUM_PINNED),
-                        ALBUM_PATH + "=?",
-                        new String[]{path},
-                        null, null, null);
-
-                if (cursor.moveToFirst())
-                    return new AlbumSettings(
-                            cursor.getString(0),
-                            cursor.getInt(1),
-                            cursor.getInt(2),
-                            cursor.getInt(3));
-            } else
-                db.insert(
-                        TABLE_ALBUMS,
-                        null,
-                        getDefaults(path));
-
-            return AlbumSettings.getDefaults();
+            for (Map.Entry<String, AlbumSettings> entry : settings.entrySet()) {
+                AlbumSettings albumSettings = entry.getValue();
+                ContentValues values = new ContentValues();
+                values.put(ALBUM_COVER_PATH, albumSettings.coverPath);
+                values.put(ALBUM_PINNED, albumSettings.pinned ? 1 : 0);
+                values.put(ALBUM_SORTING_MODE, albumSettings.sortingMode);
+                values.put(ALBUM_SORTING_ORDER, albumSettings.sortingOrder);
+
+                insertDefaults(entry.getKey(), -1);
+                db.update(TABLE_ALBUMS, values, ALBUM_PATH+"=?", new String[]{ entry.getKey() });
+            }
+            db.setTransactionSuccessful();
         } finally {
-            if (cursor != null)
-                cursor.close();
+            db.endTransaction();
         }
     }
 }
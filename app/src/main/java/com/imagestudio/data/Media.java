@@ -31,6 +31,7 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
     private static final String[] sProjection = new String[] {
             MediaStore.Images.Media.DATA,
             MediaStore.Images.Media.DATE_TAKEN,
+            MediaStore.Images.Media.DATE_MODIFIED,
             MediaStore.Images.Media.MIME_TYPE,
             MediaStore.Images.Media.SIZE,
             MediaStore.Images.Media.ORIENTATION
@@ -38,14 +39,17 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
 
     private static final int CURSOR_POS_DATA = ArrayUtils.getIndex(sProjection, MediaStore.Images.Media.DATA);
     private static final int CURSOR_POS_DATE_TAKEN = ArrayUtils.getIndex(sProjection, MediaStore.Images.Media.DATE_TAKEN);
+    private static final int CURSOR_POS_DATE_MODIFIED = ArrayUtils.getIndex(sProjection, MediaStore.Images.Media.DATE_MODIFIED);
     private static final int CURSOR_POS_MIME_TYPE = ArrayUtils.getIndex(sProjection, MediaStore.Images.Media.MIME_TYPE);
     private static final int CURSOR_POS_SIZE = ArrayUtils.getIndex(sProjection, MediaStore.Images.Media.SIZE);
     private static final int CURSOR_POS_ORIENTATION = ArrayUtils.getIndex(sProjection, MediaStore.Images.Media.ORIENTATION);
 
     private String path = null;
     private long dateModified = -1;
+    private long dateTaken = -1;
     private String mimeType = MimeTypeUtils.UNKNOWN_MIME_TYPE;
     private int orientation = 0;
+    private boolean hasOrientation = false;
 
     private String uriString = null;
 
@@ -58,6 +62,7 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
     public Media(String path, long dateModified) {
         this.path = path;
         this.dateModified = dateModified;
+        this.dateTaken = dateModified;
         this.mimeType = MimeTypeUtils.getMimeType(path);
     }
 
@@ -79,10 +84,13 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
 
     public Media(@NotNull Cursor cur) {
         this.path = cur.getString(CURSOR_POS_DATA);
-        this.dateModified = cur.getLong(CURSOR_POS_DATE_TAKEN);
+        // NOTE: MediaStore stores DATE_MODIFIED in seconds and DATE_TAKEN in milliseconds
+        this.dateModified = cur.getLong(CURSOR_POS_DATE_MODIFIED) * 1000;
+        this.dateTaken = cur.isNull(CURSOR_POS_DATE_TAKEN) ? dateModified : cur.getLong(CURSOR_POS_DATE_TAKEN);
         this.mimeType = cur.getString(CURSOR_POS_MIME_TYPE);
         this.size = cur.getLong(CURSOR_POS_SIZE);
         this.orientation = cur.getInt(CURSOR_POS_ORIENTATION);
+        this.hasOrientation = !cur.isNull(CURSOR_POS_ORIENTATION);
     }
 
     @Override
@@ -159,6 +167,17 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
         return dateModified;
     }
 
+    /**
+     * @return when the media was taken, the last modified date if unknown
+     */
+    public Long getDateTaken() {
+        return dateTaken;
+    }
+
+    public void setDateTaken(long dateTaken) {
+        this.dateTaken = dateTaken;
+    }
+
     public ObjectKey getSignature() {
         return new ObjectKey(getDateModified() + getPath() + getOrientation());
     }
@@ -167,6 +186,13 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
         return orientation;
     }
 
+    /**
+     * @return true if the orientation comes from MediaStore or has been set, false if it is unknown
+     */
+    public boolean hasOrientation() {
+        return hasOrientation;
+    }
+
     //<editor-fold desc="Exif & More">
 // TODO remove from here!
     @Deprecated
@@ -185,6 +211,7 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
     @Deprecated
     public boolean setOrientation(final int orientation) {
         this.orientation = orientation;
+        this.hasOrientation = true;
         // TODO: 28/08/16  find a better way
         // TODO update also content provider
         new Thread(new Runnable() {
@@ -225,19 +252,9 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
         return super.equals(obj);
     }
 
-    @Deprecated
-    private long getDateTaken() {
-        /*// TODO: 16/08/16 improved
-        Date dateOriginal = metadata.getDateOriginal();
-        if (dateOriginal != null) return metadata.getDateOriginal().getTime();
-        return -1;*/
-        return 1;
-    }
-
-    @Deprecated
     public boolean fixDate() {
         long newDate = getDateTaken();
-        if (newDate != -1) {
+        if (newDate != -1 && newDate != dateModified) {
             File f = new File(path);
             if (f.setLastModified(newDate)) {
                 dateModified = newDate;
@@ -266,8 +283,10 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
     public void writeToParcel(Parcel dest, int flags) {
         dest.writeString(this.path);
         dest.writeLong(this.dateModified);
+        dest.writeLong(this.dateTaken);
         dest.writeString(this.mimeType);
         dest.writeInt(this.orientation);
+        dest.writeByte(this.hasOrientation ? (byte) 1 : (byte) 0);
         dest.writeString(this.uriString);
         dest.writeLong(this.size);
         dest.writeByte(this.selected ? (byte) 1 : (byte) 0);
@@ -276,8 +295,10 @@ public class Media implements TimelineItem, CursorHandler, Parcelable {
     protected Media(Parcel in) {
         this.path = in.readString();
         this.dateModified = in.readLong();
+        this.dateTaken = in.readLong();
         this.mimeType = in.readString();
         this.orientation = in.readInt();
+        this.hasOrientation = in.readByte() != 0;
         this.uriString = in.readString();
         this.size = in.readLong();
         this.selected = in.readByte() != 0;
@@ -5,6 +5,8 @@ import android.media.MediaScannerConnection;
 import android.net.Uri;
 import android.provider.MediaStore;
 
+import com.imagestudio.data.duplicates.SimilarMediaFinder;
+import com.imagestudio.data.metadata.MetadataCache;
 import com.imagestudio.data.provider.CPHelper;
 import com.imagestudio.progress.ProgressException;
 import com.imagestudio.util.StringUtils;
@@ -66,6 +68,8 @@ public class MediaHelper {
         File file = new File(media.getPath());
         StorageHelper.deleteFile(context, file);
         context.getContentResolver().delete(external, MediaStore.MediaColumns.DATA + "=?", new String[]{file.getPath()});
+        MetadataCache.getInstance(context).remove(file.getPath());
+        SimilarMediaFinder.getInstance(context).remove(file.getPath());
         return true;
     }
 
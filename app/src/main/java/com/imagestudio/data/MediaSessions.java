@@ -0,0 +1,50 @@
+package com.imagestudio.data;
+
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * In process registry of the media lists handed from a grid to the media viewer.
+ *
+ * Intents only carry the id of a session instead of the parceled list, so opening a big album
+ * costs nothing and can't exceed the binder transaction limit. Sessions live in memory only:
+ * after a process death {@link #get(int)} returns null and the viewer has to query the album again.
+ * Ids start from a random base in every process, so an id restored from a previous process doesn't
+ * point to an unrelated session.
+ */
+public class MediaSessions {
+
+    public static final int NO_SESSION = -1;
+
+    private static final SparseArray<ArrayList<Media>> sessions = new SparseArray<>();
+    private static int nextId = new Random().nextInt(Integer.MAX_VALUE);
+
+    /**
+     * Register a copy of the list, already loaded and sorted by the caller.
+     *
+     * @return the id of the new session
+     */
+    public static synchronized int open(List<Media> media) {
+        int id = nextId;
+        // ids stay positive, away from NO_SESSION
+        nextId = (nextId + 1) & Integer.MAX_VALUE;
+        sessions.put(id, new ArrayList<>(media));
+        return id;
+    }
+
+    /**
+     * @return the list of the session, null if it was closed or lost with the process
+     */
+    @Nullable
+    public static synchronized ArrayList<Media> get(int id) {
+        return sessions.get(id);
+    }
+
+    public static synchronized void close(int id) {
+        sessions.remove(id);
+    }
+}
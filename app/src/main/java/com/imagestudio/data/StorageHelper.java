@@ -16,6 +16,7 @@ import android.support.annotation.Nullable;
 import android.support.v4.content.FileProvider;
 import android.support.v4.provider.DocumentFile;
 import android.util.Log;
+import android.util.LruCache;
 
 import com.orhanobut.hawk.Hawk;
 
@@ -44,6 +45,11 @@ public class StorageHelper {
 	private static final String TAG = "StorageHelper";
 	private static final String PRIMARY_VOLUME_NAME = "primary";
 
+	/**
+	 * Document uris already resolved on the granted SD card tree, keyed by absolute path.
+	 */
+	private static final LruCache<String, Uri> documentUris = new LruCache<>(1024);
+
 	/**
 	 * Check is a file is writable. Detects write issues on external SD card.
 	 *
@@ -84,6 +90,7 @@ public class StorageHelper {
 	 * @return True if creation was successful.
 	 */
 	public static boolean mkdir(Context context, @NonNull final File dir) {
+		invalidateDocumentUri(dir);
 		boolean success = dir.exists();
 		// Try the normal way
 		if (!success) success = dir.mkdir();
@@ -199,7 +206,8 @@ public class StorageHelper {
 		// First try the normal rename.
 		boolean success = source.renameTo(target);
 
-		if (!success) {
+		if (success) invalidateDocumentUri(source);
+		else {
 			success = copyFile(context, source, target);
 			if (success) {
 				try {
@@ -321,7 +329,10 @@ public class StorageHelper {
 			}
 		}
 
-		if (success) scanFile(context, new String[]{file.getPath()});
+		if (success) {
+			invalidateDocumentUri(file);
+			scanFile(context, new String[]{file.getPath()});
+		}
 		else throw new ProgressException(error);
 	}
 
@@ -367,12 +378,16 @@ public class StorageHelper {
 			return false;
 
 		// Try the normal way
-		if (file.delete()) return true;
+		if (file.delete()) {
+			invalidateDocumentUri(file);
+			return true;
+		}
 
 
 		// Try with Storage Access Framework.
 		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
 			DocumentFile document = getDocumentFile(context, file, true, true);
+			invalidateDocumentUri(file);
 			return document != null && document.delete();
 		}
 
@@ -395,6 +410,11 @@ public class StorageHelper {
 	 * Get a DocumentFile corresponding to the given file (for writing on ExtSdCard on Android 5). If the file is not
 	 * existing, it is created.
 	 *
+	 * Document ids of the external storage provider are built as "volume:relative/path", so the document uri of a
+	 * file is computed straight from its path with {@link DocumentsContract#buildDocumentUriUsingTree} instead of
+	 * listing every parent directory through {@link DocumentFile#findFile}. Resolved uris are kept in
+	 * {@link #documentUris} so repeated operations on the same folder only cost a cache lookup.
+	 *
 	 * @param file              The file.
 	 * @param isDirectory       flag indicating if the file should be a directory.
 	 * @param createDirectories flag indicating if intermediate path directories should be created if not existing.
@@ -406,50 +426,96 @@ public class StorageHelper {
 
 		if (treeUri == null) return null;
 
-		DocumentFile document = DocumentFile.fromTreeUri(context, treeUri);
 		String sdcardPath = getSavedSdcardPath(context);
-		String suffixPathPart = null;
+		String rootPath = null;
 
 		if (sdcardPath != null) {
 			if((file.getPath().indexOf(sdcardPath)) != -1)
-				suffixPathPart = file.getAbsolutePath().substring(sdcardPath.length());
+				rootPath = sdcardPath;
 		} else {
 			HashSet<File> storageRoots = StorageHelper.getStorageRoots(context);
 			for(File root : storageRoots) {
 				if (root != null) {
 					if ((file.getPath().indexOf(root.getPath())) != -1)
-						suffixPathPart = file.getAbsolutePath().substring(file.getPath().length());
+						rootPath = root.getPath();
 				}
 			}
 		}
 
-		if (suffixPathPart == null) {
+		if (rootPath == null) {
 			Log.d(TAG, "unable to find the document file, filePath:"+ file.getPath()+ " root: " + ""+sdcardPath);
 			return null;
 		}
 
+		String suffixPathPart = file.getAbsolutePath().substring(rootPath.length());
 		if (suffixPathPart.startsWith(File.separator)) suffixPathPart = suffixPathPart.substring(1);
 
+		Uri documentUri = getDocumentUri(context, treeUri, rootPath, suffixPathPart, isDirectory, createDirectories);
+		return documentUri != null ? DocumentFile.fromSingleUri(context, documentUri) : null;
+	}
+
+	/**
+	 * Resolve the document uri of a path relative to the root of the granted tree, creating the missing
+	 * documents on the way if requested.
+	 *
+	 * @return the document uri, or null if it does not exist and could not be created.
+	 */
+	private static Uri getDocumentUri(Context context, Uri treeUri, String rootPath, String suffixPathPart,
+									  boolean isDirectory, boolean createDirectories) {
+		ContentResolver resolver = context.getContentResolver();
+		String documentId = DocumentsContract.getTreeDocumentId(treeUri);
+		Uri document = DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId);
+		String path = rootPath;
+
+		if (suffixPathPart.isEmpty()) return document;
+
 		String[] parts = suffixPathPart.split("/");
 
-		for (int i = 0; i < parts.length; i++) { // 3 is the
+		for (int i = 0; i < parts.length; i++) {
+			documentId = documentId.endsWith(":") ? documentId + parts[i] : documentId + "/" + parts[i];
+			path = path + File.separator + parts[i];
+
+			Uri cached = documentUris.get(path);
+			if (cached != null) {
+				document = cached;
+				continue;
+			}
+
+			Uri child = DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId);
+			if (!DocumentFile.fromSingleUri(context, child).exists()) {
+				boolean last = i == parts.length - 1;
+				if (!last && !createDirectories) return null;
 
-			DocumentFile tmp = document.findFile(parts[i]);
-			if (tmp != null)
-				document = document.findFile(parts[i]);
-			else {
-				if (i < parts.length - 1) {
-					if (createDirectories) document = document.createDirectory(parts[i]);
-					else return null;
+				String mimeType = !last || isDirectory ? DocumentsContract.Document.MIME_TYPE_DIR : "image";
+				try {
+					child = DocumentsContract.createDocument(resolver, document, mimeType, parts[i]);
+				} catch (Exception e) {
+					Log.e(TAG, "Failed to create document " + path, e);
+					child = null;
 				}
-				else if (isDirectory) document = document.createDirectory(parts[i]);
-				else return document.createFile("image", parts[i]);
+				if (child == null) return null;
 			}
+
+			documentUris.put(path, child);
+			document = child;
 		}
 
 		return document;
 	}
 
+	/**
+	 * Drop the cached document uri of a path and of everything below it.
+	 *
+	 * @param file the file or folder that was created, moved or deleted.
+	 */
+	private static void invalidateDocumentUri(@NonNull File file) {
+		String path = file.getAbsolutePath();
+		String children = path + File.separator;
+		for (String key : documentUris.snapshot().keySet())
+			if (key.equals(path) || key.startsWith(children))
+				documentUris.remove(key);
+	}
+
 	/**
 	 * Get the stored tree URIs.
 	 *
@@ -470,6 +536,7 @@ public class StorageHelper {
 	 * @param uri          the target value of the preference.
 	 */
 	public static void saveSdCardInfo(Context context, @Nullable final Uri uri) {
+		documentUris.evictAll();
 		Hawk.put(context.getString(R.string.preference_internal_uri_extsdcard_photos),
 						uri == null ? null : uri.toString());
 		Hawk.put("sd_card_path", StorageHelper.getSdcardPath(context));
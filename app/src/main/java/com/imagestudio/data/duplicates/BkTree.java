@@ -0,0 +1,68 @@
+package com.imagestudio.data.duplicates;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * Burkhard-Keller tree over 64 bit hashes with the Hamming distance.
+ *
+ * Every child sits at a known distance from its parent, so by the triangle inequality a search
+ * within {@code radius} of a hash only has to visit the children at distance d - radius .. d + radius,
+ * which prunes most of the tree for small radiuses.
+ */
+class BkTree<T> {
+
+    private static class Node<T> {
+        final long hash;
+        final T item;
+        // indexed by the distance to this node, 0 - 64
+        Node<T>[] children;
+
+        Node(long hash, T item) {
+            this.hash = hash;
+            this.item = item;
+        }
+    }
+
+    private Node<T> root = null;
+
+    @SuppressWarnings("unchecked")
+    void add(long hash, T item) {
+        if (root == null) {
+            root = new Node<>(hash, item);
+            return;
+        }
+
+        Node<T> node = root;
+        while (true) {
+            int distance = DHash.distance(hash, node.hash);
+            if (node.children == null) node.children = new Node[Long.SIZE + 1];
+            Node<T> child = node.children[distance];
+            if (child == null) {
+                node.children[distance] = new Node<>(hash, item);
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Collect the items whose hash is at most {@code radius} bits away from the given one.
+     */
+    void search(long hash, int radius, List<T> results) {
+        if (root == null) return;
+
+        ArrayDeque<Node<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node<T> node = pending.pop();
+            int distance = DHash.distance(hash, node.hash);
+            if (distance <= radius) results.add(node.item);
+            if (node.children == null) continue;
+
+            int max = Math.min(Long.SIZE, distance + radius);
+            for (int i = Math.max(0, distance - radius); i <= max; i++)
+                if (node.children[i] != null) pending.push(node.children[i]);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.imagestudio.data.duplicates;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Difference hash of an image: 64 bits telling, on a 9x8 grayscale thumbnail, whether each pixel
+ * is brighter than its right neighbour. Resized, recompressed or slightly edited copies of a picture
+ * end up a few bits apart, so the Hamming distance between two hashes measures their similarity.
+ */
+class DHash {
+
+    private static final int WIDTH = 9, HEIGHT = 8;
+
+    /* the decoded bitmap is kept a few times bigger than the thumbnail to average out the noise */
+    private static final int MIN_DECODED_SIDE = 32;
+
+    private DHash() { }
+
+    /**
+     * Compute the hash from a subsampled decode of the image, it hits the disk.
+     *
+     * @return the hash, null if the image can't be decoded
+     */
+    @Nullable
+    static Long compute(Context context, Uri uri) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(context, uri, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) return null;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight);
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap decoded = decode(context, uri, options);
+        if (decoded == null) return null;
+
+        Bitmap thumbnail = Bitmap.createScaledBitmap(decoded, WIDTH, HEIGHT, true);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        thumbnail.getPixels(pixels, 0, WIDTH, 0, 0, WIDTH, HEIGHT);
+        if (thumbnail != decoded) thumbnail.recycle();
+        decoded.recycle();
+
+        long hash = 0;
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH - 1; x++) {
+                hash <<= 1;
+                if (luminance(pixels[y * WIDTH + x]) > luminance(pixels[y * WIDTH + x + 1]))
+                    hash |= 1;
+            }
+        }
+        return hash;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    private static int sampleSize(int width, int height) {
+        int sampleSize = 1;
+        while (Math.min(width, height) / (sampleSize * 2) >= MIN_DECODED_SIDE)
+            sampleSize *= 2;
+        return sampleSize;
+    }
+
+    private static int luminance(int color) {
+        // integer approximation of 0.299 R + 0.587 G + 0.114 B
+        return (((color >> 16) & 0xff) * 77 + ((color >> 8) & 0xff) * 150 + (color & 0xff) * 29) >> 8;
+    }
+
+    @Nullable
+    private static Bitmap decode(Context context, Uri uri, BitmapFactory.Options options) {
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            return in != null ? BitmapFactory.decodeStream(in, null, options) : null;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+}
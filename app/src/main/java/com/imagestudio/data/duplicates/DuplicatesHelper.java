@@ -0,0 +1,132 @@
+package com.imagestudio.data.duplicates;
+
+import android.support.annotation.Nullable;
+
+import com.imagestudio.data.Media;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+
+/**
+ * Finds media with exactly the same content.
+ *
+ * Candidates are narrowed in three steps, each only run on the collisions of the previous one:
+ * the size MediaStore already gave us, a hash of the first and last {@link #PARTIAL_SIZE} bytes,
+ * then a hash of the whole file streamed through a reused direct buffer. Most files are never opened.
+ */
+public class DuplicatesHelper {
+
+    private static final int PARTIAL_SIZE = 64 * 1024;
+    private static final int READ_BUFFER = 1024 * 1024;
+
+    /**
+     * Group the media of the list having the same content, in the order of the list.
+     * It reads files, do not subscribe on the main thread.
+     *
+     * @return an observable emitting a list for every group of two or more identical media
+     */
+    public static Observable<ArrayList<Media>> findDuplicates(List<Media> media) {
+        return Observable.create(subscriber -> {
+            HashMap<Long, ArrayList<Media>> sizes = new HashMap<>();
+            for (Media m : media) {
+                if (m.getSize() <= 0 || m.getFile() == null) continue;
+                ArrayList<Media> bucket = sizes.get(m.getSize());
+                if (bucket == null) sizes.put(m.getSize(), bucket = new ArrayList<>(1));
+                bucket.add(m);
+            }
+
+            for (ArrayList<Media> sameSize : sizes.values()) {
+                if (sameSize.size() < 2) continue;
+
+                for (ArrayList<Media> samePartial : groupByHash(sameSize, false, subscriber)) {
+                    // files up to twice the partial size have been hashed entirely already
+                    if (samePartial.get(0).getSize() <= 2 * PARTIAL_SIZE) {
+                        subscriber.onNext(samePartial);
+                        continue;
+                    }
+                    for (ArrayList<Media> sameContent : groupByHash(samePartial, true, subscriber))
+                        subscriber.onNext(sameContent);
+                }
+            }
+            subscriber.onComplete();
+        });
+    }
+
+    /**
+     * @return the groups of two or more media sharing the same hash
+     */
+    private static ArrayList<ArrayList<Media>> groupByHash(List<Media> media, boolean full, ObservableEmitter<?> subscriber) {
+        HashMap<ByteBuffer, ArrayList<Media>> hashes = new HashMap<>();
+        // one buffer for the whole group, mapping or allocating per file exhausts the address space
+        ByteBuffer buffer = full ? ByteBuffer.allocateDirect(READ_BUFFER) : ByteBuffer.allocate(PARTIAL_SIZE);
+        for (Media m : media) {
+            if (subscriber.isDisposed()) break;
+
+            ByteBuffer hash = hash(m.getFile(), full, buffer);
+            if (hash == null) continue;
+            ArrayList<Media> group = hashes.get(hash);
+            if (group == null) hashes.put(hash, group = new ArrayList<>(1));
+            group.add(m);
+        }
+
+        ArrayList<ArrayList<Media>> groups = new ArrayList<>();
+        for (ArrayList<Media> group : hashes.values())
+            if (group.size() > 1) groups.add(group);
+        return groups;
+    }
+
+    /**
+     * Hash the content of a file, or only its first and last {@link #PARTIAL_SIZE} bytes.
+     *
+     * @return the digest wrapped to be used as a map key, null if the file can't be read
+     */
+    @Nullable
+    private static ByteBuffer hash(File file, boolean full, ByteBuffer buffer) {
+        try (RandomAccessFile input = new RandomAccessFile(file, "r");
+             FileChannel channel = input.getChannel()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            long size = channel.size();
+
+            if (full) {
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            } else {
+                buffer.clear();
+                read(channel, buffer, 0);
+                digest.update(buffer);
+                if (size > PARTIAL_SIZE) {
+                    buffer.clear();
+                    read(channel, buffer, Math.max(PARTIAL_SIZE, size - PARTIAL_SIZE));
+                    digest.update(buffer);
+                }
+            }
+            return ByteBuffer.wrap(digest.digest());
+        } catch (IOException | NoSuchAlgorithmException e) {
+            return null;
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) break;
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,182 @@
+package com.imagestudio.data.duplicates;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.Nullable;
+
+import com.imagestudio.data.HandlingAlbums;
+import com.imagestudio.data.Media;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import io.reactivex.Observable;
+
+/**
+ * Finds near-duplicate images (burst shots, resized or re-shared copies) by their {@link DHash}.
+ *
+ * Hashes are stored in folders.db, keyed by path and only valid while the size and the last
+ * modified time of the file still match. They are computed lazily when first needed and can be
+ * filled ahead of time with {@link #index(Media)}. Images that can't be decoded are stored without
+ * a hash so they aren't decoded again.
+ */
+public class SimilarMediaFinder {
+
+    private static final String TABLE_HASHES = "image_hashes";
+
+    private static final String COLUMN_PATH = "path";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_MODIFIED = "modified";
+    private static final String COLUMN_DHASH = "dhash";
+
+    /* hashes this many bits apart, out of 64, are considered the same picture */
+    private static final int MAX_DISTANCE = 8;
+
+    private static SimilarMediaFinder mInstance = null;
+
+    private final Context context;
+    private final HandlingAlbums helper;
+
+    /**
+     * A row of the cache, its hash is null if the image couldn't be decoded.
+     */
+    private static class CachedHash {
+        @Nullable final Long hash;
+
+        CachedHash(@Nullable Long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private SimilarMediaFinder(Context context) {
+        this.context = context;
+        this.helper = HandlingAlbums.getInstance(context);
+    }
+
+    public static synchronized SimilarMediaFinder getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new SimilarMediaFinder(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Create the hashes table, called by the folders.db migrations.
+     */
+    public static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " +
+                TABLE_HASHES + "(" +
+                COLUMN_PATH + " TEXT PRIMARY KEY, " +
+                COLUMN_SIZE + " INTEGER, " +
+                COLUMN_MODIFIED + " INTEGER, " +
+                COLUMN_DHASH + " INTEGER)");
+    }
+
+    private SQLiteDatabase db() {
+        return helper.getWritableDatabase();
+    }
+
+    /**
+     * Group the images of the list that look alike, in the order of the list.
+     * It hashes the images missing from the cache, do not subscribe on the main thread.
+     *
+     * @return an observable emitting a list for every group of two or more similar images
+     */
+    public Observable<ArrayList<Media>> findSimilar(List<Media> media) {
+        return Observable.create(subscriber -> {
+            ArrayList<Media> images = new ArrayList<>(media.size());
+            ArrayList<Long> hashes = new ArrayList<>(media.size());
+            BkTree<Integer> tree = new BkTree<>();
+
+            for (Media m : media) {
+                if (subscriber.isDisposed()) return;
+                if (!m.isImage()) continue;
+
+                Long hash = getHash(m);
+                if (hash == null) continue;
+
+                tree.add(hash, images.size());
+                images.add(m);
+                hashes.add(hash);
+            }
+
+            HashSet<Integer> grouped = new HashSet<>();
+            ArrayList<Integer> neighbours = new ArrayList<>();
+            for (int i = 0; i < images.size() && !subscriber.isDisposed(); i++) {
+                if (grouped.contains(i)) continue;
+
+                neighbours.clear();
+                tree.search(hashes.get(i), MAX_DISTANCE, neighbours);
+                ArrayList<Media> group = new ArrayList<>();
+                group.add(images.get(i));
+                grouped.add(i);
+                for (Integer neighbour : neighbours) {
+                    if (grouped.add(neighbour)) group.add(images.get(neighbour));
+                }
+
+                if (group.size() > 1) subscriber.onNext(group);
+            }
+            subscriber.onComplete();
+        });
+    }
+
+    /**
+     * Make sure the cache holds an up to date hash of the given image.
+     *
+     * @return true if the image had to be decoded
+     */
+    public boolean index(Media media) {
+        File file = media.getFile();
+        if (!media.isImage() || file == null || getCached(file) != null) return false;
+
+        put(file, DHash.compute(context, media.getUri()));
+        return true;
+    }
+
+    /**
+     * Drop the hash of a deleted or moved file.
+     */
+    public void remove(String path) {
+        db().delete(TABLE_HASHES, COLUMN_PATH + "=?", new String[]{ path });
+    }
+
+    @Nullable
+    private Long getHash(Media media) {
+        File file = media.getFile();
+        if (file == null) return DHash.compute(context, media.getUri());
+
+        CachedHash cached = getCached(file);
+        if (cached != null) return cached.hash;
+
+        Long hash = DHash.compute(context, media.getUri());
+        put(file, hash);
+        return hash;
+    }
+
+    /**
+     * @return the cached row of the file, null if missing or stale
+     */
+    @Nullable
+    private CachedHash getCached(File file) {
+        String query = String.format("SELECT %s IS NULL, %s FROM %s WHERE %s=? AND %s=? AND %s=?",
+                COLUMN_DHASH, COLUMN_DHASH, TABLE_HASHES, COLUMN_PATH, COLUMN_SIZE, COLUMN_MODIFIED);
+        String[] args = { file.getPath(), String.valueOf(file.length()), String.valueOf(file.lastModified()) };
+
+        try (Cursor cursor = db().rawQuery(query, args)) {
+            if (!cursor.moveToFirst()) return null;
+            return new CachedHash(cursor.getInt(0) != 0 ? null : cursor.getLong(1));
+        }
+    }
+
+    private void put(File file, @Nullable Long hash) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_PATH, file.getPath());
+        values.put(COLUMN_SIZE, file.length());
+        values.put(COLUMN_MODIFIED, file.lastModified());
+        values.put(COLUMN_DHASH, hash);
+        db().insertWithOnConflict(TABLE_HASHES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+}
@@ -0,0 +1,98 @@
+package com.imagestudio.data.metadata;
+
+import java.util.LinkedHashSet;
+
+/**
+ * Geohash encoding, used to index the GPS coordinates of the media.
+ *
+ * A geohash interleaves longitude and latitude bits and writes them in base 32, so points sharing
+ * a prefix lie in the same cell and a cell is a contiguous range of an index sorted by geohash.
+ */
+class GeoHash {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /* ~5m x 5m cells, the precision stored in the index */
+    static final int MAX_PRECISION = 9;
+
+    /* above this many cells a bounding box is covered with bigger ones */
+    private static final int MAX_COVER_CELLS = 32;
+
+    private GeoHash() { }
+
+    static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean even = true;
+        int bit = 0, ch = 0;
+
+        while (hash.length() < precision) {
+            if (even) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) { ch |= 1 << (4 - bit); minLon = mid; }
+                else maxLon = mid;
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) { ch |= 1 << (4 - bit); minLat = mid; }
+                else maxLat = mid;
+            }
+            even = !even;
+
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Height in degrees of a cell, longitude takes the extra bit on odd precisions.
+     */
+    static double cellHeight(int precision) {
+        return 180 / Math.pow(2, (5 * precision) / 2);
+    }
+
+    static double cellWidth(int precision) {
+        return 360 / Math.pow(2, (5 * precision + 1) / 2);
+    }
+
+    /**
+     * The upper bound (exclusive) of the index range holding every hash starting with the given prefix.
+     */
+    static String upperBound(String prefix) {
+        // '{' sorts right after 'z', the last base 32 digit
+        return prefix + '{';
+    }
+
+    /**
+     * Find the cells covering a bounding box, using the finest precision that needs at most
+     * {@link #MAX_COVER_CELLS} cells. The box must not cross the antimeridian.
+     */
+    static LinkedHashSet<String> cover(double south, double west, double north, double east) {
+        int precision = MAX_PRECISION;
+        while (precision > 1 && cellCount(south, west, north, east, precision) > MAX_COVER_CELLS)
+            precision--;
+
+        double height = cellHeight(precision), width = cellWidth(precision);
+        LinkedHashSet<String> cells = new LinkedHashSet<>();
+        for (double lat = south; lat < north + height; lat += height)
+            for (double lon = west; lon < east + width; lon += width)
+                cells.add(encode(Math.min(lat, north), Math.min(lon, east), precision));
+        return cells;
+    }
+
+    private static long cellCount(double south, double west, double north, double east, int precision) {
+        long rows = (long) Math.ceil((north - south) / cellHeight(precision)) + 1;
+        long columns = (long) Math.ceil((east - west) / cellWidth(precision)) + 1;
+        return rows * columns;
+    }
+
+    /**
+     * Geohash length used to cluster the media at a map zoom level (0 - 21).
+     */
+    static int precisionForZoom(int zoom) {
+        return Math.max(1, Math.min(MAX_PRECISION - 1, (zoom + 1) / 2));
+    }
+}
@@ -1,40 +1,60 @@
 package com.imagestudio.data.metadata;
 
-import java.util.HashMap;
-import java.util.TreeMap;
+import java.util.Arrays;
 
 /**
  * Created by dnld on 16/08/16.
+ *
+ * Label/value pairs kept in insertion order, backed by two parallel arrays
+ * so rows are read by position without boxing or copying.
  */
 
-public class MediaDetailsMap<K, V> extends HashMap<String, String> {
+public class MediaDetailsMap {
 
-  private TreeMap<Integer, String> keys;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String[] labels;
+    private String[] values;
+    private int size = 0;
 
     public MediaDetailsMap() {
-      super();
-      keys = new TreeMap<>();
+        this(DEFAULT_CAPACITY);
     }
 
-    public String getValue(int index) {
-      String key = keys.get(index);
-      return super.get(key);
+    public MediaDetailsMap(int capacity) {
+        labels = new String[Math.max(capacity, 1)];
+        values = new String[labels.length];
     }
 
-    public String getLabel(int index) {
-      return keys.get(index);
+    public int size() {
+        return size;
     }
 
-    @Override
-    public String put(String key, String value) {
-      keys.put(keys.size(), key);
-      return super.put(key, value);
+    public String getLabel(int index) {
+        return labels[index];
     }
 
-    public int[] getKeySet() {
-      int[] array = new int[keys.size()];
-      for(int i = 0; i < keys.size(); i++) array[i]=i;
-      return array;
+    public String getValue(int index) {
+        return values[index];
     }
 
+    /**
+     * Append a row, or replace the value of the row with the same label keeping its position.
+     */
+    public void put(String label, String value) {
+        // a few dozen rows at most, a scan beats hashing them
+        for (int i = 0; i < size; i++)
+            if (labels[i].equals(label)) {
+                values[i] = value;
+                return;
+            }
+
+        if (size == labels.length) {
+            labels = Arrays.copyOf(labels, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        labels[size] = label;
+        values[size] = value;
+        size++;
+    }
 }
@@ -1,135 +1,128 @@
 package com.imagestudio.data.metadata;
 
+import android.content.ContentValues;
 import android.content.Context;
-import android.graphics.BitmapFactory;
+import android.database.Cursor;
 import android.net.Uri;
-import android.util.Log;
 
-import com.drew.imaging.ImageMetadataReader;
-import com.drew.imaging.ImageProcessingException;
 import com.drew.lang.GeoLocation;
-import com.drew.metadata.Metadata;
-import com.drew.metadata.exif.ExifDirectoryBase;
-import com.drew.metadata.exif.ExifIFD0Directory;
-import com.drew.metadata.exif.ExifSubIFDDirectory;
-import com.drew.metadata.exif.GpsDirectory;
-
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
-import java.text.DecimalFormat;
+
 import java.util.Date;
 import java.util.Locale;
-import java.util.TimeZone;
 
 
 /**
  * Created by dnld on 14/08/16.
  */
 
-class MetaDataItem {
-
-    private static final String TAG = "MetaData";
-
-    private static final int ORIENTATION_NORMAL = 1;
-    private static final int ORIENTATION_ROTATE_180 = 3;
-    private static final int ORIENTATION_ROTATE_90 = 6;  // rotate 90 cw to right it
-    private static final int ORIENTATION_ROTATE_270 = 8;  // rotate 270 to right it
-
-    private String make = null, model = null, fNumber = null, iso = null, exposureTime;
-    private Date dateOriginal = null;
-    private GeoLocation location = null;
-    private int orientation = -1, height = -1, width = -1;
+public class MetaDataItem {
+
+    static final int ORIENTATION_NORMAL = 1;
+    static final int ORIENTATION_ROTATE_180 = 3;
+    static final int ORIENTATION_ROTATE_90 = 6;  // rotate 90 cw to right it
+    static final int ORIENTATION_ROTATE_270 = 8;  // rotate 270 to right it
+
+    static final String COLUMN_MAKE = "make";
+    static final String COLUMN_MODEL = "model";
+    static final String COLUMN_F_NUMBER = "f_number";
+    static final String COLUMN_ISO = "iso";
+    static final String COLUMN_EXPOSURE_TIME = "exposure_time";
+    static final String COLUMN_DATE_ORIGINAL = "date_original";
+    static final String COLUMN_LATITUDE = "latitude";
+    static final String COLUMN_LONGITUDE = "longitude";
+    static final String COLUMN_GEOHASH = "geohash";
+    static final String COLUMN_ORIENTATION = "orientation";
+    static final String COLUMN_WIDTH = "width";
+    static final String COLUMN_HEIGHT = "height";
+
+    private static final String[] sProjection = new String[] {
+            COLUMN_MAKE,
+            COLUMN_MODEL,
+            COLUMN_F_NUMBER,
+            COLUMN_ISO,
+            COLUMN_EXPOSURE_TIME,
+            COLUMN_DATE_ORIGINAL,
+            COLUMN_LATITUDE,
+            COLUMN_LONGITUDE,
+            COLUMN_ORIENTATION,
+            COLUMN_WIDTH,
+            COLUMN_HEIGHT
+    };
+
+    private final String make, model, fNumber, iso, exposureTime;
+    private final Date dateOriginal;
+    private final GeoLocation location;
+    private final int orientation, height, width;
 
     static MetaDataItem getMetadata(Context context, Uri uri) {
-        return new MetaDataItem(context, uri);
+        return MetadataReader.read(context, uri);
     }
 
-    private MetaDataItem(Context context, Uri uri) {
-        this.load(context, uri);
+    MetaDataItem(String make, String model, String fNumber, String iso, String exposureTime,
+                 Date dateOriginal, GeoLocation location, int orientation, int width, int height) {
+        this.make = make;
+        this.model = model;
+        this.fNumber = fNumber;
+        this.iso = iso;
+        this.exposureTime = exposureTime;
+        this.dateOriginal = dateOriginal;
+        this.location = location;
+        this.orientation = orientation;
+        this.width = width;
+        this.height = height;
     }
 
-
-    private void load(Context context, Uri uri) {
-
-        /* Bitmap Metadata */
-        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
-            if (in == null) return;
-
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inJustDecodeBounds = true;
-            BitmapFactory.decodeStream(in, null, options);
-            width = options.outWidth;
-            height = options.outHeight;
-        } catch (FileNotFoundException e) {
-            Log.e(TAG, "loadMetadata -> file not found", e);
-            return;
-        } catch (IOException e) {
-            Log.e(TAG, "loadMetadata -> IOException", e);
-            return;
-        }
-
-        /* Exif Metadata */
-        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
-            if (in == null) return;
-
-            Metadata metadata = ImageMetadataReader.readMetadata(in);
-            handleDirectoryBase(metadata.getFirstDirectoryOfType(ExifIFD0Directory.class));
-            ExifSubIFDDirectory dir = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
-            if (dir != null) {
-                dateOriginal = dir.getDateOriginal(TimeZone.getDefault());
-                handleDirectoryBase(dir);
-            }
-
-            GpsDirectory d = metadata.getFirstDirectoryOfType(GpsDirectory.class);
-            if (d != null) location = d.getGeoLocation();
-        } catch (FileNotFoundException e) {
-            Log.e(TAG, "loadMetadata -> file not found", e);
-        } catch (IOException e) {
-            Log.e(TAG, "loadMetadata -> IOException", e);
-        } catch (ImageProcessingException e) {
-            Log.e(TAG, "loadMetadata -> file type not supported", e);
-        }
-
+    /**
+     * Rebuild an item stored by {@link MetadataCache}, the cursor must use {@link #getProjection()}.
+     */
+    MetaDataItem(Cursor cur) {
+        this(cur.getString(0),
+                cur.getString(1),
+                cur.getString(2),
+                cur.getString(3),
+                cur.getString(4),
+                cur.isNull(5) ? null : new Date(cur.getLong(5)),
+                cur.isNull(6) || cur.isNull(7) ? null : new GeoLocation(cur.getDouble(6), cur.getDouble(7)),
+                cur.getInt(8),
+                cur.getInt(9),
+                cur.getInt(10));
     }
-    private void handleDirectoryBase(ExifDirectoryBase d) {
-        if(d != null) {
-            if (d.containsTag(ExifDirectoryBase.TAG_MAKE))
-                make =d.getString(ExifDirectoryBase.TAG_MAKE);
-            if (d.containsTag(ExifDirectoryBase.TAG_MODEL))
-                model = d.getString(ExifDirectoryBase.TAG_MODEL);
-
-            if (d.containsTag(ExifDirectoryBase.TAG_ISO_EQUIVALENT))
-                iso = d.getString(ExifDirectoryBase.TAG_ISO_EQUIVALENT);
-            if (d.containsTag(ExifDirectoryBase.TAG_EXPOSURE_TIME) && d.getRational(ExifDirectoryBase.TAG_EXPOSURE_TIME) != null)
-                exposureTime = new DecimalFormat("0.000").format(d.getRational(ExifDirectoryBase.TAG_EXPOSURE_TIME));
-            if (d.containsTag(ExifDirectoryBase.TAG_FNUMBER))
-                fNumber = d.getString(ExifDirectoryBase.TAG_FNUMBER);
-
-            if (d.containsTag(ExifDirectoryBase.TAG_DATETIME_ORIGINAL))
-                dateOriginal = d.getDate(ExifDirectoryBase.TAG_DATETIME_ORIGINAL);
-        }
+
+    static String[] getProjection() {
+        return sProjection;
     }
 
+    ContentValues toContentValues() {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_MAKE, make);
+        values.put(COLUMN_MODEL, model);
+        values.put(COLUMN_F_NUMBER, fNumber);
+        values.put(COLUMN_ISO, iso);
+        values.put(COLUMN_EXPOSURE_TIME, exposureTime);
+        values.put(COLUMN_DATE_ORIGINAL, dateOriginal != null ? dateOriginal.getTime() : null);
+        values.put(COLUMN_LATITUDE, location != null ? location.getLatitude() : null);
+        values.put(COLUMN_LONGITUDE, location != null ? location.getLongitude() : null);
+        values.put(COLUMN_GEOHASH, location != null
+                ? GeoHash.encode(location.getLatitude(), location.getLongitude(), GeoHash.MAX_PRECISION) : null);
+        values.put(COLUMN_ORIENTATION, orientation);
+        values.put(COLUMN_WIDTH, width);
+        values.put(COLUMN_HEIGHT, height);
+        return values;
+    }
 
     public String getResolution() {
         if (width != -1 && -1 != height)
             return String.format(Locale.getDefault(),"%dx%d", width, height);
         else return "¿x?";
     }
+
+    /**
+     * @return the rotation in degrees, -1 if unknown
+     */
     public int getOrientation() {
         return orientation;
     }
 
-    public void setOrientation(int orientation) {
-        switch (orientation) {
-            case ORIENTATION_NORMAL: this.orientation = 0;
-            case ORIENTATION_ROTATE_90: this.orientation = 90;
-            case ORIENTATION_ROTATE_180: this.orientation = 180;
-            case ORIENTATION_ROTATE_270: this.orientation = 270;
-        }
-    }
-
     Date getDateOriginal() {
         return dateOriginal;
     }
@@ -0,0 +1,168 @@
+package com.imagestudio.data.metadata;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.imagestudio.data.HandlingAlbums;
+import com.imagestudio.data.Media;
+
+import java.io.File;
+import java.util.HashMap;
+
+/**
+ * Persistent cache of the extracted metadata, stored in folders.db.
+ *
+ * Rows are keyed by path and are only valid while the size and the last modified time of the file
+ * still match, so an edited or replaced file is parsed again. Items are stored lazily when first
+ * read and can be filled ahead of time with {@link #index(Media)}.
+ */
+public class MetadataCache {
+
+    static final String TABLE_METADATA = "metadata";
+
+    static final String COLUMN_PATH = "path";
+    static final String COLUMN_SIZE = "size";
+    static final String COLUMN_MODIFIED = "modified";
+
+    private static MetadataCache mInstance = null;
+
+    private final Context context;
+    private final HandlingAlbums helper;
+
+    private MetadataCache(Context context) {
+        this.context = context;
+        this.helper = HandlingAlbums.getInstance(context);
+    }
+
+    public static synchronized MetadataCache getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new MetadataCache(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Create the cache table, called by the folders.db migrations.
+     */
+    public static void createTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " +
+                TABLE_METADATA + "(" +
+                COLUMN_PATH + " TEXT PRIMARY KEY, " +
+                COLUMN_SIZE + " INTEGER, " +
+                COLUMN_MODIFIED + " INTEGER, " +
+                MetaDataItem.COLUMN_MAKE + " TEXT, " +
+                MetaDataItem.COLUMN_MODEL + " TEXT, " +
+                MetaDataItem.COLUMN_F_NUMBER + " TEXT, " +
+                MetaDataItem.COLUMN_ISO + " TEXT, " +
+                MetaDataItem.COLUMN_EXPOSURE_TIME + " TEXT, " +
+                MetaDataItem.COLUMN_DATE_ORIGINAL + " INTEGER, " +
+                MetaDataItem.COLUMN_LATITUDE + " REAL, " +
+                MetaDataItem.COLUMN_LONGITUDE + " REAL, " +
+                MetaDataItem.COLUMN_ORIENTATION + " INTEGER, " +
+                MetaDataItem.COLUMN_WIDTH + " INTEGER, " +
+                MetaDataItem.COLUMN_HEIGHT + " INTEGER)");
+
+        db.execSQL(String.format("CREATE INDEX IF NOT EXISTS idx_metadata_date ON %s (%s)",
+                TABLE_METADATA, MetaDataItem.COLUMN_DATE_ORIGINAL));
+        db.execSQL(String.format("CREATE INDEX IF NOT EXISTS idx_metadata_camera ON %s (%s, %s)",
+                TABLE_METADATA, MetaDataItem.COLUMN_MAKE, MetaDataItem.COLUMN_MODEL));
+    }
+
+    private SQLiteDatabase db() {
+        return helper.getWritableDatabase();
+    }
+
+    /**
+     * Get the metadata of a media, from the cache if it is still valid, parsing the file otherwise.
+     * It may hit the disk, do not call it from the main thread.
+     */
+    @NonNull MetaDataItem get(Media media) {
+        File file = media.getFile();
+        if (file == null)
+            return MetaDataItem.getMetadata(context, media.getUri());
+
+        MetaDataItem item = getCached(file);
+        if (item == null) {
+            item = MetaDataItem.getMetadata(context, media.getUri());
+            put(file, item);
+        }
+        return item;
+    }
+
+    /**
+     * @return the cached metadata of the file, null if missing or stale
+     */
+    @Nullable MetaDataItem getCached(File file) {
+        Cursor cursor = db().query(TABLE_METADATA, MetaDataItem.getProjection(),
+                String.format("%s=? AND %s=? AND %s=?", COLUMN_PATH, COLUMN_SIZE, COLUMN_MODIFIED),
+                new String[]{ file.getPath(), String.valueOf(file.length()), String.valueOf(file.lastModified()) },
+                null, null, null);
+        try {
+            return cursor.moveToFirst() ? new MetaDataItem(cursor) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Get the dates taken stored for the media directly inside a folder, with a range scan on the path index.
+     *
+     * @return the dates taken in milliseconds keyed by path
+     */
+    public HashMap<String, Long> getDatesTaken(String folder) {
+        HashMap<String, Long> dates = new HashMap<>();
+        String prefix = folder.endsWith(File.separator) ? folder : folder + File.separator;
+        // '0' is the character right after '/', so the range matches every path starting with the prefix
+        String upperBound = prefix.substring(0, prefix.length() - 1) + '0';
+
+        Cursor cursor = db().query(TABLE_METADATA,
+                new String[]{ COLUMN_PATH, MetaDataItem.COLUMN_DATE_ORIGINAL },
+                String.format("%s>=? AND %s<? AND %s IS NOT NULL", COLUMN_PATH, COLUMN_PATH, MetaDataItem.COLUMN_DATE_ORIGINAL),
+                new String[]{ prefix, upperBound },
+                null, null, null);
+        try {
+            while (cursor.moveToNext()) {
+                String path = cursor.getString(0);
+                // skip the media of sub folders
+                if (path.indexOf(File.separatorChar, prefix.length()) == -1)
+                    dates.put(path, cursor.getLong(1));
+            }
+        } finally {
+            cursor.close();
+        }
+        return dates;
+    }
+
+    private void put(File file, MetaDataItem item) {
+        ContentValues values = item.toContentValues();
+        values.put(COLUMN_PATH, file.getPath());
+        values.put(COLUMN_SIZE, file.length());
+        values.put(COLUMN_MODIFIED, file.lastModified());
+        // update in place rather than REPLACE, which would delete the row without firing the search index triggers
+        if (db().update(TABLE_METADATA, values, COLUMN_PATH + "=?", new String[]{ file.getPath() }) == 0)
+            db().insertWithOnConflict(TABLE_METADATA, null, values, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * Make sure the cache holds up to date metadata for the given media.
+     *
+     * @return true if the file had to be parsed
+     */
+    public boolean index(Media media) {
+        File file = media.getFile();
+        if (file == null || getCached(file) != null) return false;
+
+        put(file, MetaDataItem.getMetadata(context, media.getUri()));
+        return true;
+    }
+
+    /**
+     * Drop the cached metadata of a deleted or moved file.
+     */
+    public void remove(String path) {
+        db().delete(TABLE_METADATA, COLUMN_PATH + "=?", new String[]{ path });
+    }
+}
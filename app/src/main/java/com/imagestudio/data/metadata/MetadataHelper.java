@@ -12,8 +12,13 @@ import com.imagestudio.R;
 import com.imagestudio.data.Media;
 import com.imagestudio.util.StringUtils;
 
+import java.io.InputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
 
 /**
  * Created by dnld on 4/10/17.
@@ -21,17 +26,37 @@ import java.util.Date;
 
 public class MetadataHelper {
 
-    public MediaDetailsMap<String, String> getMainDetails(Context context, Media m){
-        MediaDetailsMap<String, String> details = new MediaDetailsMap<>();
+    /* files that take longer than this to parse are given up, their details stay partial */
+    private static final long METADATA_TIMEOUT = 5;
+
+    /**
+     * Details known without reading the file, they can be shown right away.
+     */
+    public MediaDetailsMap getFileDetails(Context context, Media m) {
+        MediaDetailsMap details = new MediaDetailsMap();
         details.put(context.getString(R.string.path), m.getDisplayPath());
         details.put(context.getString(R.string.type), m.getMimeType());
         if(m.getSize() != -1)
             details.put(context.getString(R.string.size), StringUtils.humanReadableByteCount(m.getSize(), true));
         // TODO should i add this always?
         details.put(context.getString(R.string.orientation), m.getOrientation() + "");
-        MetaDataItem metadata = MetaDataItem.getMetadata(context, m.getUri());
-        details.put(context.getString(R.string.resolution), metadata.getResolution());
         details.put(context.getString(R.string.date), SimpleDateFormat.getDateTimeInstance().format(new Date(m.getDateModified())));
+        return details;
+    }
+
+    /**
+     * Load the metadata of a media on the io scheduler, from the cache when possible.
+     * The observable fails with a {@link java.util.concurrent.TimeoutException} on pathological files.
+     */
+    public Observable<MetaDataItem> getMetadata(Context context, Media m) {
+        return Observable.fromCallable(() -> MetadataCache.getInstance(context).get(m))
+                .subscribeOn(Schedulers.io())
+                .timeout(METADATA_TIMEOUT, TimeUnit.SECONDS);
+    }
+
+    public MediaDetailsMap getMetadataDetails(Context context, MetaDataItem metadata) {
+        MediaDetailsMap details = new MediaDetailsMap();
+        details.put(context.getString(R.string.resolution), metadata.getResolution());
         Date dateOriginal = metadata.getDateOriginal();
         if (dateOriginal != null)
             details.put(context.getString(R.string.date_taken), SimpleDateFormat.getDateTimeInstance().format(dateOriginal));
@@ -49,10 +74,10 @@ public class MetadataHelper {
         return details;
     }
 
-    public MediaDetailsMap<String, String> getAllDetails(Context context, Media media) {
-        MediaDetailsMap<String, String> data = new MediaDetailsMap<String, String>();
-        try {
-            Metadata metadata = ImageMetadataReader.readMetadata(context.getContentResolver().openInputStream(media.getUri()));
+    public MediaDetailsMap getAllDetails(Context context, Media media) {
+        MediaDetailsMap data = new MediaDetailsMap();
+        try (InputStream in = MetadataReader.open(context, media.getUri())) {
+            Metadata metadata = ImageMetadataReader.readMetadata(in);
             for(Directory directory : metadata.getDirectories()) {
 
                 for(Tag tag : directory.getTags()) {
@@ -0,0 +1,179 @@
+package com.imagestudio.data.metadata;
+
+import android.content.Context;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.util.Log;
+
+import com.drew.imaging.FileType;
+import com.drew.imaging.FileTypeDetector;
+import com.drew.imaging.ImageMetadataReader;
+import com.drew.imaging.ImageProcessingException;
+import com.drew.imaging.jpeg.JpegMetadataReader;
+import com.drew.imaging.png.PngMetadataReader;
+import com.drew.lang.GeoLocation;
+import com.drew.metadata.Directory;
+import com.drew.metadata.Metadata;
+import com.drew.metadata.exif.ExifDirectoryBase;
+import com.drew.metadata.exif.ExifIFD0Directory;
+import com.drew.metadata.exif.ExifReader;
+import com.drew.metadata.exif.ExifSubIFDDirectory;
+import com.drew.metadata.exif.GpsDirectory;
+import com.drew.metadata.jpeg.JpegDirectory;
+import com.drew.metadata.jpeg.JpegReader;
+import com.drew.metadata.png.PngDirectory;
+
+import java.io.BufferedInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Extracts a {@link MetaDataItem} reading the media header once.
+ *
+ * JPEGs only go through the SOF and APP1 (EXIF) segment readers and the stream is not read past the
+ * start of scan, PNGs only up to their chunks; dimensions come from the SOF/IHDR markers, so no bitmap
+ * decode is needed. Other formats fall back to the generic reader.
+ */
+class MetadataReader {
+
+    private static final String TAG = "MetadataReader";
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private String make = null, model = null, fNumber = null, iso = null, exposureTime = null;
+    private Date dateOriginal = null;
+    private GeoLocation location = null;
+    private int orientation = -1, width = -1, height = -1;
+
+    private MetadataReader() { }
+
+    static MetaDataItem read(Context context, Uri uri) {
+        MetadataReader reader = new MetadataReader();
+        reader.load(context, uri);
+        return reader.build();
+    }
+
+    /**
+     * Open the media with a buffered stream that supports mark/reset, as needed by the file type detection.
+     */
+    static BufferedInputStream open(Context context, Uri uri) throws FileNotFoundException {
+        InputStream in = context.getContentResolver().openInputStream(uri);
+        if (in == null) throw new FileNotFoundException(uri.toString());
+        return new BufferedInputStream(in, BUFFER_SIZE);
+    }
+
+    private void load(Context context, Uri uri) {
+        try (BufferedInputStream in = open(context, uri)) {
+            Metadata metadata;
+            FileType type = FileTypeDetector.detectFileType(in);
+            switch (type) {
+                case Jpeg:
+                    metadata = JpegMetadataReader.readMetadata(in, Arrays.asList(new JpegReader(), new ExifReader()));
+                    readDimensions(metadata.getFirstDirectoryOfType(JpegDirectory.class),
+                            JpegDirectory.TAG_IMAGE_WIDTH, JpegDirectory.TAG_IMAGE_HEIGHT);
+                    break;
+                case Png:
+                    metadata = PngMetadataReader.readMetadata(in);
+                    for (PngDirectory directory : metadata.getDirectoriesOfType(PngDirectory.class))
+                        readDimensions(directory, PngDirectory.TAG_IMAGE_WIDTH, PngDirectory.TAG_IMAGE_HEIGHT);
+                    break;
+                default:
+                    metadata = ImageMetadataReader.readMetadata(in);
+                    break;
+            }
+            readExif(metadata);
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, "loadMetadata -> file not found", e);
+            return;
+        } catch (IOException e) {
+            Log.e(TAG, "loadMetadata -> IOException", e);
+        } catch (ImageProcessingException e) {
+            Log.e(TAG, "loadMetadata -> file type not supported", e);
+        }
+
+        // NOTE: only formats without a supported header (e.g. webp, heif) need a second pass
+        if (width == -1 || height == -1)
+            decodeBounds(context, uri);
+    }
+
+    private void readExif(Metadata metadata) {
+        ExifIFD0Directory ifd0 = metadata.getFirstDirectoryOfType(ExifIFD0Directory.class);
+        handleDirectoryBase(ifd0);
+        if (ifd0 != null && ifd0.containsTag(ExifDirectoryBase.TAG_ORIENTATION))
+            orientation = toDegrees(ifd0.getInteger(ExifDirectoryBase.TAG_ORIENTATION));
+
+        ExifSubIFDDirectory dir = metadata.getFirstDirectoryOfType(ExifSubIFDDirectory.class);
+        if (dir != null) {
+            dateOriginal = dir.getDateOriginal(TimeZone.getDefault());
+            handleDirectoryBase(dir);
+            readDimensions(dir, ExifDirectoryBase.TAG_EXIF_IMAGE_WIDTH, ExifDirectoryBase.TAG_EXIF_IMAGE_HEIGHT);
+        }
+
+        GpsDirectory d = metadata.getFirstDirectoryOfType(GpsDirectory.class);
+        if (d != null) location = d.getGeoLocation();
+    }
+
+    private void handleDirectoryBase(ExifDirectoryBase d) {
+        if(d != null) {
+            if (d.containsTag(ExifDirectoryBase.TAG_MAKE))
+                make =d.getString(ExifDirectoryBase.TAG_MAKE);
+            if (d.containsTag(ExifDirectoryBase.TAG_MODEL))
+                model = d.getString(ExifDirectoryBase.TAG_MODEL);
+
+            if (d.containsTag(ExifDirectoryBase.TAG_ISO_EQUIVALENT))
+                iso = d.getString(ExifDirectoryBase.TAG_ISO_EQUIVALENT);
+            if (d.containsTag(ExifDirectoryBase.TAG_EXPOSURE_TIME) && d.getRational(ExifDirectoryBase.TAG_EXPOSURE_TIME) != null)
+                exposureTime = new DecimalFormat("0.000").format(d.getRational(ExifDirectoryBase.TAG_EXPOSURE_TIME));
+            if (d.containsTag(ExifDirectoryBase.TAG_FNUMBER))
+                fNumber = d.getString(ExifDirectoryBase.TAG_FNUMBER);
+
+            if (d.containsTag(ExifDirectoryBase.TAG_DATETIME_ORIGINAL))
+                dateOriginal = d.getDate(ExifDirectoryBase.TAG_DATETIME_ORIGINAL);
+        }
+    }
+
+    /**
+     * Take the dimensions from the given directory, unless they are already known.
+     */
+    private void readDimensions(Directory directory, int widthTag, int heightTag) {
+        if (directory == null || (width != -1 && height != -1)) return;
+
+        Integer w = directory.getInteger(widthTag), h = directory.getInteger(heightTag);
+        if (w != null && h != null) {
+            width = w;
+            height = h;
+        }
+    }
+
+    private void decodeBounds(Context context, Uri uri) {
+        try (InputStream in = open(context, uri)) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(in, null, options);
+            width = options.outWidth;
+            height = options.outHeight;
+        } catch (IOException e) {
+            Log.e(TAG, "decodeBounds -> IOException", e);
+        }
+    }
+
+    private static int toDegrees(Integer exifOrientation) {
+        if (exifOrientation == null) return -1;
+        switch (exifOrientation) {
+            case MetaDataItem.ORIENTATION_NORMAL: return 0;
+            case MetaDataItem.ORIENTATION_ROTATE_90: return 90;
+            case MetaDataItem.ORIENTATION_ROTATE_180: return 180;
+            case MetaDataItem.ORIENTATION_ROTATE_270: return 270;
+            default: return -1;
+        }
+    }
+
+    private MetaDataItem build() {
+        return new MetaDataItem(make, model, fNumber, iso, exposureTime, dateOriginal, location, orientation, width, height);
+    }
+}
@@ -0,0 +1,79 @@
+package com.imagestudio.data.metadata;
+
+import android.content.Context;
+import android.util.LruCache;
+
+import com.imagestudio.data.Media;
+import com.imagestudio.util.BitmapUtils;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Observable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Resolves the rotation, in degrees, to apply to an image.
+ *
+ * Sources are tried from the cheapest: the MediaStore value loaded with the media, the orientations
+ * already resolved, the metadata cache and last the EXIF of the file. Only the first two are free,
+ * the others are only reached through {@link #get(Media)} off the main thread.
+ */
+public class OrientationService {
+
+    public static final int UNKNOWN = -1;
+
+    private static OrientationService mInstance = null;
+
+    private final Context context;
+    private final LruCache<String, Integer> orientations = new LruCache<>(512);
+
+    private OrientationService(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized OrientationService getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new OrientationService(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Get the orientation if it is known without any I/O, safe on the main thread.
+     *
+     * @return the orientation in degrees, {@link #UNKNOWN} if it has to be read
+     */
+    public int peek(Media media) {
+        if (media.hasOrientation()) return media.getOrientation();
+        Integer orientation = orientations.get(media.getUri().toString());
+        return orientation != null ? orientation : UNKNOWN;
+    }
+
+    /**
+     * @return an observable emitting the orientation in degrees, resolved on the io scheduler
+     */
+    public Observable<Integer> get(Media media) {
+        return Observable.fromCallable(() -> resolve(media))
+                .subscribeOn(Schedulers.io())
+                .timeout(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Resolve the orientation going through every source, it may hit the disk.
+     */
+    public int resolve(Media media) {
+        int orientation = peek(media);
+        if (orientation != UNKNOWN) return orientation;
+
+        File file = media.getFile();
+        MetaDataItem cached = file != null ? MetadataCache.getInstance(context).getCached(file) : null;
+        if (cached != null)
+            // no orientation tag means the image is stored straight
+            orientation = Math.max(cached.getOrientation(), 0);
+        else
+            orientation = BitmapUtils.getOrientation(media.getUri(), context);
+
+        orientations.put(media.getUri().toString(), orientation);
+        return orientation;
+    }
+}
@@ -0,0 +1,158 @@
+package com.imagestudio.data.metadata;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.imagestudio.data.HandlingAlbums;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Spatial queries over the GPS coordinates stored in the metadata table.
+ *
+ * Every geotagged row carries the geohash of its location, indexed, so a viewport is answered with a
+ * handful of index range scans (one per covering cell) followed by an exact bounding box check.
+ * Clusters are the geohash cells of a precision picked from the zoom level, computed in SQL.
+ */
+public class PlacesIndex {
+
+    private static PlacesIndex mInstance = null;
+
+    private final HandlingAlbums helper;
+
+    public static class Cluster {
+        public final double latitude, longitude;
+        public final int count;
+
+        Cluster(double latitude, double longitude, int count) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.count = count;
+        }
+    }
+
+    private PlacesIndex(Context context) {
+        this.helper = HandlingAlbums.getInstance(context);
+    }
+
+    public static synchronized PlacesIndex getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new PlacesIndex(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Add the geohash column and its index to the metadata table, filling it for the rows already stored.
+     * Called by the folders.db migrations.
+     */
+    public static void createIndex(SQLiteDatabase db) {
+        db.execSQL(String.format("ALTER TABLE %s ADD COLUMN %s TEXT",
+                MetadataCache.TABLE_METADATA, MetaDataItem.COLUMN_GEOHASH));
+        db.execSQL(String.format("CREATE INDEX IF NOT EXISTS idx_metadata_geohash ON %s (%s)",
+                MetadataCache.TABLE_METADATA, MetaDataItem.COLUMN_GEOHASH));
+
+        Cursor cursor = db.query(MetadataCache.TABLE_METADATA,
+                new String[]{ MetadataCache.COLUMN_PATH, MetaDataItem.COLUMN_LATITUDE, MetaDataItem.COLUMN_LONGITUDE },
+                String.format("%s IS NOT NULL AND %s IS NOT NULL", MetaDataItem.COLUMN_LATITUDE, MetaDataItem.COLUMN_LONGITUDE),
+                null, null, null, null);
+        try {
+            ContentValues values = new ContentValues();
+            while (cursor.moveToNext()) {
+                values.put(MetaDataItem.COLUMN_GEOHASH,
+                        GeoHash.encode(cursor.getDouble(1), cursor.getDouble(2), GeoHash.MAX_PRECISION));
+                db.update(MetadataCache.TABLE_METADATA, values,
+                        MetadataCache.COLUMN_PATH + "=?", new String[]{ cursor.getString(0) });
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @return the paths of the media taken inside the bounding box
+     */
+    public ArrayList<String> getPaths(double south, double west, double north, double east) {
+        ArrayList<String> paths = new ArrayList<>();
+        for (double[] box : split(south, west, north, east)) {
+            ArrayList<String> args = new ArrayList<>();
+            Cursor cursor = helper.getWritableDatabase().query(MetadataCache.TABLE_METADATA,
+                    new String[]{ MetadataCache.COLUMN_PATH },
+                    where(box, args), args.toArray(new String[args.size()]),
+                    null, null, null);
+            try {
+                while (cursor.moveToNext())
+                    paths.add(cursor.getString(0));
+            } finally {
+                cursor.close();
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * Group the media taken inside the bounding box in clusters sized for the zoom level of the map.
+     */
+    public ArrayList<Cluster> getClusters(double south, double west, double north, double east, int zoom) {
+        ArrayList<Cluster> clusters = new ArrayList<>();
+        int precision = GeoHash.precisionForZoom(zoom);
+        for (double[] box : split(south, west, north, east)) {
+            ArrayList<String> args = new ArrayList<>();
+            Cursor cursor = helper.getWritableDatabase().query(MetadataCache.TABLE_METADATA,
+                    new String[]{
+                            String.format("avg(%s)", MetaDataItem.COLUMN_LATITUDE),
+                            String.format("avg(%s)", MetaDataItem.COLUMN_LONGITUDE),
+                            "count(*)" },
+                    where(box, args), args.toArray(new String[args.size()]),
+                    String.format("substr(%s, 1, %d)", MetaDataItem.COLUMN_GEOHASH, precision),
+                    null, null);
+            try {
+                while (cursor.moveToNext())
+                    clusters.add(new Cluster(cursor.getDouble(0), cursor.getDouble(1), cursor.getInt(2)));
+            } finally {
+                cursor.close();
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Build the selection of the rows inside a box: a range on the geohash index per covering cell,
+     * then the exact coordinates check.
+     */
+    private static String where(double[] box, ArrayList<String> args) {
+        LinkedHashSet<String> cells = GeoHash.cover(box[0], box[1], box[2], box[3]);
+        StringBuilder where = new StringBuilder("(");
+        for (String cell : cells) {
+            if (where.length() > 1) where.append(" OR ");
+            where.append(String.format("(%s>=? AND %s<?)", MetaDataItem.COLUMN_GEOHASH, MetaDataItem.COLUMN_GEOHASH));
+            args.add(cell);
+            args.add(GeoHash.upperBound(cell));
+        }
+        where.append(String.format(") AND %s BETWEEN ? AND ? AND %s BETWEEN ? AND ?",
+                MetaDataItem.COLUMN_LATITUDE, MetaDataItem.COLUMN_LONGITUDE));
+        args.add(String.valueOf(box[0]));
+        args.add(String.valueOf(box[2]));
+        args.add(String.valueOf(box[1]));
+        args.add(String.valueOf(box[3]));
+        return where.toString();
+    }
+
+    /**
+     * Split a box crossing the antimeridian in two.
+     *
+     * @return the boxes as {south, west, north, east}
+     */
+    private static ArrayList<double[]> split(double south, double west, double north, double east) {
+        ArrayList<double[]> boxes = new ArrayList<>(2);
+        if (west <= east) {
+            boxes.add(new double[]{ south, west, north, east });
+        } else {
+            boxes.add(new double[]{ south, west, north, 180 });
+            boxes.add(new double[]{ south, -180, north, east });
+        }
+        return boxes;
+    }
+}
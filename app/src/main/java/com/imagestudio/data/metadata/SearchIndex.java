@@ -0,0 +1,120 @@
+package com.imagestudio.data.metadata;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.imagestudio.data.HandlingAlbums;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Locale;
+
+/**
+ * Full text search over the media of the metadata table.
+ *
+ * An FTS4 table holds the tokens of the path (so file and album names), the camera and the date
+ * taken of every row. Triggers on the metadata table keep it in sync, so it grows with the media index
+ * without any extra work from the callers. Every word of a query is matched as a prefix.
+ *
+ * The tags column stays empty until media can be tagged, it is created now because an FTS table
+ * can't be altered to add it later.
+ */
+public class SearchIndex {
+
+    private static final String TABLE_SEARCH = "metadata_search";
+
+    private static final String COLUMN_PATH = "path";
+    private static final String COLUMN_CAMERA = "camera";
+    private static final String COLUMN_DATE = "date";
+    private static final String COLUMN_TAGS = "tags";
+
+    private static SearchIndex mInstance = null;
+
+    private final HandlingAlbums helper;
+
+    private SearchIndex(Context context) {
+        this.helper = HandlingAlbums.getInstance(context);
+    }
+
+    public static synchronized SearchIndex getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new SearchIndex(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Create the search table and the triggers filling it, indexing the rows already stored.
+     * Called by the folders.db migrations.
+     */
+    public static void createIndex(SQLiteDatabase db) {
+        db.execSQL(String.format("CREATE VIRTUAL TABLE IF NOT EXISTS %s USING fts4(%s, %s, %s, %s)",
+                TABLE_SEARCH, COLUMN_PATH, COLUMN_CAMERA, COLUMN_DATE, COLUMN_TAGS));
+
+        db.execSQL(String.format("CREATE TRIGGER IF NOT EXISTS %s_insert AFTER INSERT ON %s BEGIN " +
+                        "INSERT INTO %s(docid, %s, %s, %s) VALUES (new.rowid, new.%s, %s, %s); END",
+                TABLE_SEARCH, MetadataCache.TABLE_METADATA,
+                TABLE_SEARCH, COLUMN_PATH, COLUMN_CAMERA, COLUMN_DATE,
+                MetadataCache.COLUMN_PATH, camera("new."), date("new.")));
+        db.execSQL(String.format("CREATE TRIGGER IF NOT EXISTS %s_update AFTER UPDATE OF %s, %s, %s, %s ON %s BEGIN " +
+                        "UPDATE %s SET %s=new.%s, %s=%s, %s=%s WHERE docid=new.rowid; END",
+                TABLE_SEARCH, MetadataCache.COLUMN_PATH, MetaDataItem.COLUMN_MAKE, MetaDataItem.COLUMN_MODEL,
+                MetaDataItem.COLUMN_DATE_ORIGINAL, MetadataCache.TABLE_METADATA,
+                TABLE_SEARCH, COLUMN_PATH, MetadataCache.COLUMN_PATH,
+                COLUMN_CAMERA, camera("new."), COLUMN_DATE, date("new.")));
+        db.execSQL(String.format("CREATE TRIGGER IF NOT EXISTS %s_delete AFTER DELETE ON %s BEGIN " +
+                        "DELETE FROM %s WHERE docid=old.rowid; END",
+                TABLE_SEARCH, MetadataCache.TABLE_METADATA, TABLE_SEARCH));
+
+        db.execSQL(String.format("INSERT INTO %s(docid, %s, %s, %s) SELECT rowid, %s, %s, %s FROM %s",
+                TABLE_SEARCH, COLUMN_PATH, COLUMN_CAMERA, COLUMN_DATE,
+                MetadataCache.COLUMN_PATH, camera(""), date(""), MetadataCache.TABLE_METADATA));
+    }
+
+    private static String camera(String row) {
+        return String.format("coalesce(%s%s, '') || ' ' || coalesce(%s%s, '')",
+                row, MetaDataItem.COLUMN_MAKE, row, MetaDataItem.COLUMN_MODEL);
+    }
+
+    private static String date(String row) {
+        return String.format("strftime('%%Y %%m %%d', %s%s / 1000, 'unixepoch')",
+                row, MetaDataItem.COLUMN_DATE_ORIGINAL);
+    }
+
+    /**
+     * Get the folders holding media matching every word of the query, each one as a prefix.
+     */
+    public HashSet<String> searchFolders(String query) {
+        HashSet<String> folders = new HashSet<>();
+        String match = toMatch(query);
+        if (match.isEmpty()) return folders;
+
+        // the search table holds the path of every row, no need to join the metadata
+        Cursor cursor = helper.getWritableDatabase().rawQuery(String.format(
+                "SELECT %s FROM %s WHERE %s MATCH ?", COLUMN_PATH, TABLE_SEARCH, TABLE_SEARCH),
+                new String[]{ match });
+        try {
+            while (cursor.moveToNext()) {
+                String folder = new File(cursor.getString(0)).getParent();
+                if (folder != null) folders.add(folder);
+            }
+        } finally {
+            cursor.close();
+        }
+        return folders;
+    }
+
+    /**
+     * Turn the words typed by the user into a query matching all of them as prefixes,
+     * dropping anything FTS would read as an operator.
+     */
+    private static String toMatch(String query) {
+        StringBuilder match = new StringBuilder();
+        for (String word : query.toLowerCase(Locale.US).split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append(word).append('*');
+        }
+        return match.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package com.imagestudio.data.posters;
+
+import android.net.Uri;
+
+import com.imagestudio.data.Media;
+
+/**
+ * Glide model of the poster frame of a video, loaded through the {@link VideoPosterStore}.
+ */
+public class VideoPoster {
+
+    final Uri uri;
+    final String key;
+
+    public VideoPoster(Media media) {
+        this.uri = media.getUri();
+        this.key = media.getUri() + "_" + media.getDateModified();
+    }
+
+    /**
+     * @return the model to give Glide for a thumbnail of the media: its poster for a video,
+     * the media itself otherwise
+     */
+    public static Object model(Media media) {
+        return media.isVideo() ? new VideoPoster(media) : media.getUri();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof VideoPoster && key.equals(((VideoPoster) o).key);
+    }
+
+    @Override
+    public int hashCode() {
+        return key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
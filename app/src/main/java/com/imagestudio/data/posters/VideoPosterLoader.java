@@ -0,0 +1,131 @@
+package com.imagestudio.data.posters;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.bumptech.glide.Priority;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.data.DataFetcher;
+import com.bumptech.glide.load.model.ModelLoader;
+import com.bumptech.glide.load.model.ModelLoaderFactory;
+import com.bumptech.glide.load.model.MultiModelLoaderFactory;
+import com.bumptech.glide.signature.ObjectKey;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lets Glide load {@link VideoPoster}s, streaming the JPEG kept by the {@link VideoPosterStore}.
+ * Missing posters are extracted on the threads of the store, the Glide thread is free meanwhile.
+ */
+public class VideoPosterLoader implements ModelLoader<VideoPoster, InputStream> {
+
+    private final VideoPosterStore store;
+
+    private VideoPosterLoader(VideoPosterStore store) {
+        this.store = store;
+    }
+
+    @Nullable
+    @Override
+    public LoadData<InputStream> buildLoadData(@NonNull VideoPoster poster, int width, int height, @NonNull Options options) {
+        return new LoadData<>(new ObjectKey(poster.key), new Fetcher(store, poster));
+    }
+
+    @Override
+    public boolean handles(@NonNull VideoPoster poster) {
+        return true;
+    }
+
+    public static class Factory implements ModelLoaderFactory<VideoPoster, InputStream> {
+
+        private final Context context;
+
+        public Factory(Context context) {
+            this.context = context.getApplicationContext();
+        }
+
+        @NonNull
+        @Override
+        public ModelLoader<VideoPoster, InputStream> build(@NonNull MultiModelLoaderFactory multiFactory) {
+            return new VideoPosterLoader(VideoPosterStore.getInstance(context));
+        }
+
+        @Override
+        public void teardown() {
+        }
+    }
+
+    private static class Fetcher implements DataFetcher<InputStream> {
+
+        private final VideoPosterStore store;
+        private final VideoPoster poster;
+        private volatile InputStream stream = null;
+        private volatile boolean cancelled = false;
+        private volatile VideoPosterStore.Callback waiting = null;
+
+        Fetcher(VideoPosterStore store, VideoPoster poster) {
+            this.store = store;
+            this.poster = poster;
+        }
+
+        @Override
+        public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super InputStream> callback) {
+            stream = store.openCached(poster);
+            if (stream != null) {
+                callback.onDataReady(stream);
+                return;
+            }
+
+            waiting = new VideoPosterStore.Callback() {
+                @Override
+                public void onReady(InputStream poster) {
+                    stream = poster;
+                    // cleaned up already, nobody will close it
+                    if (cancelled) cleanup();
+                    else callback.onDataReady(poster);
+                }
+
+                @Override
+                public void onFailed(Exception e) {
+                    if (!cancelled) callback.onLoadFailed(e);
+                }
+            };
+            store.load(poster, waiting);
+            // cancelled before the callback was known
+            if (cancelled) store.cancel(poster, waiting);
+        }
+
+        @Override
+        public void cleanup() {
+            InputStream stream = this.stream;
+            if (stream == null) return;
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        @Override
+        public void cancel() {
+            // the extraction of a cell scrolled away is skipped if nobody else waits for it
+            cancelled = true;
+            VideoPosterStore.Callback waiting = this.waiting;
+            if (waiting != null) store.cancel(poster, waiting);
+        }
+
+        @NonNull
+        @Override
+        public Class<InputStream> getDataClass() {
+            return InputStream.class;
+        }
+
+        @NonNull
+        @Override
+        public DataSource getDataSource() {
+            return DataSource.LOCAL;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.imagestudio.data.posters;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.os.Build;
+import android.os.Process;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.imagestudio.data.Media;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts and keeps on disk the poster frames of the videos.
+ *
+ * The poster is the sync frame nearest to {@link #OFFSET_US}, so the decoder never has to run
+ * through the stream past a keyframe, scaled down to {@link #TARGET_SIZE}. It is written once as
+ * a JPEG named after the uri and modification date of the video. Extractions run on their own
+ * {@link #MAX_EXTRACTIONS} threads, the callers are called back and never wait for a slot.
+ * Concurrent loads of the same poster share one extraction.
+ */
+public class VideoPosterStore {
+
+    private static final String TAG = "VideoPosterStore";
+
+    /* past the black or faded in first frames, capped to the middle of short clips */
+    private static final long OFFSET_US = 1000 * 1000;
+    private static final int TARGET_SIZE = 1024;
+    private static final int MAX_EXTRACTIONS = 2;
+    private static final long MAX_DISK_SIZE = 64L * 1024 * 1024;
+    /* the directory is trimmed every this many posters written */
+    private static final int TRIM_INTERVAL = 32;
+
+    private static VideoPosterStore mInstance = null;
+
+    private final Context context;
+    private final File directory;
+    private final ExecutorService extractors = Executors.newFixedThreadPool(MAX_EXTRACTIONS, runnable -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        runnable.run();
+    }, TAG));
+    /* the extractions queued or running by poster key, guarded by itself */
+    private final HashMap<String, Extraction> extractions = new HashMap<>();
+    private int written = 0;
+
+    private VideoPosterStore(Context context) {
+        this.context = context;
+        this.directory = new File(context.getCacheDir(), "video_posters");
+    }
+
+    public static synchronized VideoPosterStore getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new VideoPosterStore(context.getApplicationContext());
+        return mInstance;
+    }
+
+    interface Callback {
+        void onReady(InputStream poster);
+
+        void onFailed(Exception e);
+    }
+
+    /**
+     * One extraction and the callers waiting for it. It is skipped when it starts if every
+     * caller has cancelled meanwhile.
+     */
+    private class Extraction implements Callable<File> {
+        final VideoPoster poster;
+        final ArrayList<Callback> callbacks = new ArrayList<>(2);
+        /* a caller blocks on the future, it can't be skipped */
+        boolean awaited = false;
+        Future<File> future;
+
+        Extraction(VideoPoster poster) {
+            this.poster = poster;
+        }
+
+        @Override
+        public File call() throws IOException {
+            synchronized (extractions) {
+                if (callbacks.isEmpty() && !awaited) {
+                    extractions.remove(poster.key);
+                    return null;
+                }
+            }
+
+            File file = null;
+            IOException error = null;
+            try {
+                file = store(poster);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            ArrayList<Callback> waiting;
+            synchronized (extractions) {
+                extractions.remove(poster.key);
+                waiting = new ArrayList<>(callbacks);
+            }
+            for (Callback callback : waiting) {
+                try {
+                    if (error != null) throw error;
+                    // every caller gets its own stream, opened straight away
+                    callback.onReady(new FileInputStream(file));
+                } catch (IOException e) {
+                    callback.onFailed(e);
+                }
+            }
+
+            if (error != null) throw error;
+            return file;
+        }
+    }
+
+    /**
+     * Decode the poster of a video, extracting it first if needed. It waits for the extraction,
+     * do not call it on the main thread.
+     *
+     * @return the poster, null if no frame could be extracted
+     */
+    @Nullable
+    public Bitmap getBitmap(Media media) {
+        VideoPoster poster = new VideoPoster(media);
+        InputStream cached = openCached(poster);
+        if (cached != null) return decode(cached);
+
+        Future<File> future;
+        synchronized (extractions) {
+            Extraction extraction = extraction(poster);
+            extraction.awaited = true;
+            future = extraction.future;
+        }
+        try {
+            return decode(new FileInputStream(future.get()));
+        } catch (InterruptedException | ExecutionException | IOException e) {
+            Log.w(TAG, "No poster for " + media.getUri(), e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Bitmap decode(InputStream poster) {
+        try (InputStream in = poster) {
+            return BitmapFactory.decodeStream(in);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a stream of the poster if it is already on disk, null otherwise
+     */
+    @Nullable
+    InputStream openCached(VideoPoster poster) {
+        try {
+            // opened straight away, the file can be trimmed at any time
+            return new FileInputStream(new File(directory, name(poster.key)));
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Get the poster, joining the extraction already queued or running for it if any.
+     * The callback is called on an extractor thread.
+     */
+    void load(VideoPoster poster, Callback callback) {
+        synchronized (extractions) {
+            extraction(poster).callbacks.add(callback);
+        }
+    }
+
+    /**
+     * Stop waiting for a poster, its extraction is skipped if nobody else waits for it when it starts.
+     */
+    void cancel(VideoPoster poster, Callback callback) {
+        synchronized (extractions) {
+            Extraction extraction = extractions.get(poster.key);
+            if (extraction != null) extraction.callbacks.remove(callback);
+        }
+    }
+
+    /**
+     * Get the extraction queued or running for the poster, queueing one if none, under the lock.
+     */
+    private Extraction extraction(VideoPoster poster) {
+        Extraction extraction = extractions.get(poster.key);
+        if (extraction == null) {
+            extraction = new Extraction(poster);
+            extraction.future = extractors.submit(extraction);
+            extractions.put(poster.key, extraction);
+        }
+        return extraction;
+    }
+
+    /**
+     * Extract and write the poster if missing, on the calling extractor thread.
+     */
+    private File store(VideoPoster poster) throws IOException {
+        File file = new File(directory, name(poster.key));
+        // extracted by a previous load while this one was queued
+        if (file.exists()) return file;
+
+        Bitmap frame = extract(poster);
+        if (frame == null) throw new IOException("Can't extract a frame from " + poster.uri);
+        write(frame, file);
+        frame.recycle();
+
+        // the newest poster is the last one a trim deletes
+        if (shouldTrim()) trim();
+        return file;
+    }
+
+    @Nullable
+    private Bitmap extract(VideoPoster poster) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, poster.uri);
+
+            long time = OFFSET_US;
+            String duration = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (duration != null) time = Math.min(time, Long.parseLong(duration) * 1000 / 2);
+
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1)
+                return retriever.getScaledFrameAtTime(time, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, TARGET_SIZE, TARGET_SIZE);
+
+            Bitmap frame = retriever.getFrameAtTime(time, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            if (frame == null) return null;
+            float scale = (float) TARGET_SIZE / Math.max(frame.getWidth(), frame.getHeight());
+            if (scale >= 1) return frame;
+
+            Bitmap scaled = Bitmap.createScaledBitmap(frame,
+                    Math.round(frame.getWidth() * scale), Math.round(frame.getHeight() * scale), true);
+            frame.recycle();
+            return scaled;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Can't read " + poster.uri, e);
+            return null;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    private void write(Bitmap frame, File file) throws IOException {
+        if (!directory.exists() && !directory.mkdirs())
+            throw new IOException("Can't create " + directory);
+
+        // written aside then renamed, a load never sees a partial poster
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try (OutputStream out = new FileOutputStream(temp)) {
+            frame.compress(Bitmap.CompressFormat.JPEG, 85, out);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Can't write " + file);
+        }
+    }
+
+    private synchronized boolean shouldTrim() {
+        return ++written % TRIM_INTERVAL == 1;
+    }
+
+    /**
+     * Delete the oldest posters until the directory is back under three quarters of its size.
+     */
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) return;
+
+        long size = 0;
+        for (File file : files) size += file.length();
+        if (size <= MAX_DISK_SIZE) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length && size > MAX_DISK_SIZE * 3 / 4; i++) {
+            long length = files[i].length();
+            if (files[i].delete()) size -= length;
+        }
+    }
+
+    private static String name(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest.digest(key.getBytes())) name.append(String.format("%02x", b));
+            return name.append(".jpg").toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode()) + ".jpg";
+        }
+    }
+}
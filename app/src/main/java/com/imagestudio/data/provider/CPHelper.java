@@ -9,6 +9,7 @@ import com.imagestudio.data.Album;
 import com.imagestudio.data.Media;
 import com.imagestudio.data.StorageHelper;
 import com.imagestudio.data.filter.FoldersFileFilter;
+import com.imagestudio.data.metadata.MetadataCache;
 import com.imagestudio.data.filter.ImageFileFilter;
 import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.data.sort.SortingOrder;
@@ -16,6 +17,7 @@ import com.imagestudio.util.preferences.Prefs;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
@@ -203,9 +205,16 @@ public class CPHelper {
             File dir = new File(album.getPath());
             File[] files = dir.listFiles(new ImageFileFilter(Prefs.showVideos()));
             try {
-                if (files != null && files.length > 0)
-                    for (File file : files)
-                        subscriber.onNext(new Media(file));
+                if (files != null && files.length > 0) {
+                    // these media are not in MediaStore, take the dates taken from the metadata index
+                    HashMap<String, Long> datesTaken = MetadataCache.getInstance(context).getDatesTaken(dir.getPath());
+                    for (File file : files) {
+                        Media media = new Media(file);
+                        Long dateTaken = datesTaken.get(media.getPath());
+                        if (dateTaken != null) media.setDateTaken(dateTaken);
+                        subscriber.onNext(media);
+                    }
+                }
                 subscriber.onComplete();
 
             }
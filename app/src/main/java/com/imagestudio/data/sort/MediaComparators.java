@@ -43,7 +43,7 @@ public class MediaComparators {
     }
 
     private static Comparator<Media> getDateComparator() {
-        return (f1, f2) -> f1.getDateModified().compareTo(f2.getDateModified());
+        return (f1, f2) -> f1.getDateTaken().compareTo(f2.getDateTaken());
     }
 
     private static Comparator<Media> getNameComparator() {
@@ -8,7 +8,8 @@ import android.provider.MediaStore;
 
 public enum SortingMode {
   NAME (0, MediaStore.MediaColumns.DISPLAY_NAME, MediaStore.Images.ImageColumns.BUCKET_DISPLAY_NAME),
-  DATE (1, MediaStore.MediaColumns.DATE_MODIFIED, "max(" + MediaStore.Images.Media.DATE_MODIFIED + ")"),
+  DATE (1, "coalesce(" + MediaStore.Images.Media.DATE_TAKEN + ", " + MediaStore.MediaColumns.DATE_MODIFIED + " * 1000)",
+          "max(" + MediaStore.Images.Media.DATE_MODIFIED + ")"),
   SIZE(2, MediaStore.MediaColumns.SIZE, "count(*)"),
   TYPE(3, MediaStore.MediaColumns.MIME_TYPE),
   NUMERIC(4, MediaStore.MediaColumns.DISPLAY_NAME, MediaStore.Images.ImageColumns.BUCKET_DISPLAY_NAME);
@@ -3,7 +3,6 @@ package com.imagestudio.fragments;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.res.Configuration;
-import android.database.sqlite.SQLiteDatabase;
 import android.graphics.PorterDuff;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -13,6 +12,7 @@ import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.GridLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -30,9 +30,11 @@ import com.orhanobut.hawk.Hawk;
 import com.imagestudio.R;
 import com.imagestudio.adapters.AlbumsAdapter;
 import com.imagestudio.data.Album;
+import com.imagestudio.data.AlbumSettingsRepository;
 import com.imagestudio.data.AlbumsHelper;
 import com.imagestudio.data.HandlingAlbums;
 import com.imagestudio.data.MediaHelper;
+import com.imagestudio.data.metadata.SearchIndex;
 import com.imagestudio.data.provider.CPHelper;
 import com.imagestudio.data.sort.SortingMode;
 import com.imagestudio.data.sort.SortingOrder;
@@ -48,10 +50,13 @@ import org.horaapps.liz.ThemeHelper;
 import org.horaapps.liz.ThemedActivity;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
 import jp.wasabeef.recyclerview.animators.LandingAnimator;
@@ -75,6 +80,10 @@ public class AlbumsFragment extends BaseMediaGridFragment {
     private boolean hidden = false;
     ArrayList<String> excuded = new ArrayList<>();
 
+    /* folders holding media matching the search, null when not searching */
+    private HashSet<String> searchFolders = null;
+    private String searchQuery = null;
+
     public interface AlbumClickListener {
         void onAlbumClick(Album album);
     }
@@ -100,6 +109,12 @@ public class AlbumsFragment extends BaseMediaGridFragment {
         setUpColumns();
     }
 
+    @Override
+    public void onStop() {
+        super.onStop();
+        settings().flush();
+    }
+
     public void displayAlbums(boolean hidden) {
         this.hidden = hidden;
         displayAlbums();
@@ -107,11 +122,10 @@ public class AlbumsFragment extends BaseMediaGridFragment {
 
     private void displayAlbums() {
         adapter.clear();
-        SQLiteDatabase db = HandlingAlbums.getInstance(getContext().getApplicationContext()).getReadableDatabase();
-        CPHelper.getAlbums(getContext(), hidden, excuded, sortingMode(), sortingOrder())
+        settings().withSettings(CPHelper.getAlbums(getContext(), hidden, excuded, sortingMode(), sortingOrder()))
                 .subscribeOn(Schedulers.io())
-                .map(album -> album.withSettings(HandlingAlbums.getSettings(db, album.getPath())))
                 .observeOn(AndroidSchedulers.mainThread())
+                .filter(this::matchesSearch)
                 .subscribe(
                         album -> adapter.add(album),
                         throwable -> {
@@ -119,7 +133,6 @@ public class AlbumsFragment extends BaseMediaGridFragment {
                             throwable.printStackTrace();
                         },
                         () -> {
-                            db.close();
                             if (getNothingToShowListener() != null)
                                 getNothingToShowListener().changedNothingToShow(getCount() == 0);
                             refresh.setRefreshing(false);
@@ -128,6 +141,36 @@ public class AlbumsFragment extends BaseMediaGridFragment {
                         });
     }
 
+    private boolean matchesSearch(Album album) {
+        return searchFolders == null
+                || searchFolders.contains(album.getPath())
+                || album.getName().toLowerCase(Locale.getDefault()).contains(searchQuery.toLowerCase(Locale.getDefault()));
+    }
+
+    /**
+     * Show only the albums named after the query or holding media matching it in the {@link SearchIndex}.
+     */
+    private void search(String query) {
+        if (query.trim().isEmpty()) {
+            if (searchFolders == null) return;
+            searchFolders = null;
+            searchQuery = null;
+            displayAlbums();
+            return;
+        }
+
+        SearchIndex index = SearchIndex.getInstance(getContext());
+        Observable.fromCallable(() -> index.searchFolders(query))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(folders -> {
+                            searchFolders = folders;
+                            searchQuery = query;
+                            if (isAdded()) displayAlbums();
+                        },
+                        Throwable::printStackTrace);
+    }
+
     @Override
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
@@ -211,6 +254,10 @@ public class AlbumsFragment extends BaseMediaGridFragment {
         return HandlingAlbums.getInstance(getContext().getApplicationContext());
     }
 
+    private AlbumSettingsRepository settings() {
+        return AlbumSettingsRepository.getInstance(getContext().getApplicationContext());
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         inflater.inflate(R.menu.grid_albums, menu);
@@ -220,6 +267,22 @@ public class AlbumsFragment extends BaseMediaGridFragment {
         menu.findItem(R.id.sort_action).setIcon(ThemeHelper.getToolbarIcon(getContext(),(GoogleMaterial.Icon.gmd_sort)));
         menu.findItem(R.id.search_action).setIcon(ThemeHelper.getToolbarIcon(getContext(), (GoogleMaterial.Icon.gmd_search)));
 
+        SearchView searchView = (SearchView) menu.findItem(R.id.search_action).getActionView();
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                search(query);
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                // searching reloads the albums, only do it on submit and when the query is cleared
+                if (newText.isEmpty()) search(newText);
+                return true;
+            }
+        });
+
         super.onCreateOptionsMenu(menu, inflater);
     }
 
@@ -274,7 +337,7 @@ public class AlbumsFragment extends BaseMediaGridFragment {
             case R.id.pin_album:
                 if (selectedAlbum != null) {
                     boolean b = selectedAlbum.togglePinAlbum();
-                    db().setPined(selectedAlbum.getPath(), b);
+                    settings().setPinned(selectedAlbum.getPath(), b);
                     adapter.clearSelected();
                     adapter.sort();
                 }
@@ -283,7 +346,7 @@ public class AlbumsFragment extends BaseMediaGridFragment {
             case R.id.clear_album_cover:
                 if (selectedAlbum != null) {
                     selectedAlbum.removeCoverAlbum();
-                    db().setCover(selectedAlbum.getPath(), null);
+                    settings().setCover(selectedAlbum.getPath(), null);
                     adapter.clearSelected();
                     adapter.notifyItemChanaged(selectedAlbum);
                     // TODO: 4/5/17 updateui
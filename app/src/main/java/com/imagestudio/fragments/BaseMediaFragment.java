@@ -28,6 +28,10 @@ public abstract class BaseMediaFragment extends BaseFragment {
         return mediaFragment;
     }
 
+    public Media getMedia() {
+        return media;
+    }
+
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
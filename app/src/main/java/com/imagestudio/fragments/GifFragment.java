@@ -2,19 +2,42 @@ package com.imagestudio.fragments;
 
 import android.os.Bundle;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.request.RequestOptions;
+
 import com.imagestudio.data.Media;
+import com.imagestudio.views.GifEngine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+import pl.droidsonroids.gif.GifDrawable;
 import pl.droidsonroids.gif.GifImageView;
 
 /**
- * Media Fragment for showing an Image (static)
+ * Media Fragment for showing a GIF.
+ *
+ * The GIF is decoded off the main thread through the {@link GifEngine} only while its page is the
+ * visible one, and plays while the fragment is resumed. Pages off screen give their frames back
+ * to the engine and show a still of the first frame.
  */
 public class GifFragment extends BaseMediaFragment {
 
+    private GifImageView photoView;
+    private GifDrawable gif = null;
+    private Disposable loading = null;
+    private boolean visible = false;
+
     @NonNull
     public static GifFragment newInstance(@NonNull Media media) {
         return BaseMediaFragment.newInstance(new GifFragment(), media);
@@ -25,9 +48,111 @@ public class GifFragment extends BaseMediaFragment {
                              ViewGroup container,
                              Bundle savedInstanceState) {
 
-        GifImageView photoView = new GifImageView(getContext());
-        photoView.setImageURI(media.getUri());
+        photoView = new GifImageView(getContext());
         setTapListener(photoView);
         return photoView;
     }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        showStill();
+        updatePlayback();
+    }
+
+    private void showStill() {
+        Glide.with(this)
+                .asBitmap()
+                .load(media.getUri())
+                .apply(new RequestOptions().signature(media.getSignature()))
+                .into(photoView);
+    }
+
+    private void loadGif() {
+        GifEngine engine = GifEngine.getInstance(getContext());
+        DisplayMetrics metrics = getResources().getDisplayMetrics();
+
+        // a load outliving its subscription is released by whichever of the two ends last
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        AtomicReference<GifDrawable> undelivered = new AtomicReference<>();
+        loading = Observable.fromCallable(() -> {
+                    GifDrawable drawable = engine.load(media.getUri(), metrics.widthPixels, metrics.heightPixels);
+                    if (drawable == null) throw new IllegalStateException("Can't decode " + media.getUri());
+                    undelivered.set(drawable);
+                    if (cancelled.get() && undelivered.compareAndSet(drawable, null)) engine.release(drawable);
+                    return drawable;
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnDispose(() -> {
+                    cancelled.set(true);
+                    GifDrawable drawable = undelivered.getAndSet(null);
+                    if (drawable != null) engine.release(drawable);
+                })
+                .subscribe(drawable -> {
+                            loading = null;
+                            if (!undelivered.compareAndSet(drawable, null)) return;
+                            Glide.with(this).clear(photoView);
+                            gif = drawable;
+                            photoView.setImageDrawable(gif);
+                            updatePlayback();
+                        },
+                        throwable -> {
+                            loading = null;
+                            if (photoView.getDrawable() == null) photoView.setImageURI(media.getUri());
+                        });
+    }
+
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+        visible = isVisibleToUser;
+        updatePlayback();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        updatePlayback();
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        updatePlayback();
+    }
+
+    private void updatePlayback() {
+        if (photoView == null) return;
+
+        if (!visible) {
+            if (gif != null || loading != null) {
+                releaseGif();
+                showStill();
+            }
+            return;
+        }
+
+        if (gif == null) {
+            if (loading == null) loadGif();
+        } else if (isResumed()) gif.start();
+        else gif.stop();
+    }
+
+    private void releaseGif() {
+        if (loading != null) loading.dispose();
+        loading = null;
+        if (gif != null) {
+            photoView.setImageDrawable(null);
+            GifEngine.getInstance(getContext()).release(gif);
+            gif = null;
+        }
+    }
+
+    @Override
+    public void onDestroyView() {
+        releaseGif();
+        photoView = null;
+        super.onDestroyView();
+    }
 }
@@ -12,11 +12,15 @@ import com.davemorrissey.labs.subscaleview.ImageSource;
 import com.davemorrissey.labs.subscaleview.SubsamplingScaleImageView;
 
 import com.imagestudio.R;
+import com.imagestudio.adapters.MediaPrefetcher;
 import com.imagestudio.data.Media;
-import com.imagestudio.util.BitmapUtils;
+import com.imagestudio.data.metadata.OrientationService;
+import com.imagestudio.views.CachedRegionDecoder;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 
 /**
  * A Media Fragment for showing an Image (static)
@@ -25,6 +29,8 @@ public class ImageFragment extends BaseMediaFragment {
 
     @BindView(R.id.subsampling_view) SubsamplingScaleImageView imageView;
 
+    private Disposable orientationDisposable;
+
     @NonNull
     public static ImageFragment newInstance(@NonNull Media media) {
         return BaseMediaFragment.newInstance(new ImageFragment(), media);
@@ -41,13 +47,37 @@ public class ImageFragment extends BaseMediaFragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
         Uri mediaUri = media.getUri();
-        imageView.setOrientation(BitmapUtils.getOrientation(mediaUri, getContext()));
-        imageView.setImage(ImageSource.uri(mediaUri));
+        imageView.setRegionDecoderFactory(CachedRegionDecoder.factory(media));
+        MediaPrefetcher.Preview preview = MediaPrefetcher.getInstance(getContext()).get(media);
+        if (preview != null) {
+            imageView.setOrientation(preview.orientation);
+            // cached bitmap: the view must not recycle it, it stays in the prefetcher
+            imageView.setImage(ImageSource.uri(mediaUri).dimensions(preview.width, preview.height),
+                    ImageSource.cachedBitmap(preview.bitmap));
+        } else {
+            OrientationService orientations = OrientationService.getInstance(getContext());
+            int orientation = orientations.peek(media);
+            if (orientation != OrientationService.UNKNOWN) {
+                showImage(mediaUri, orientation);
+            } else {
+                // no blocking read on the main thread, start decoding once the orientation is known
+                orientationDisposable = orientations.get(media)
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(o -> showImage(mediaUri, o),
+                                throwable -> showImage(mediaUri, SubsamplingScaleImageView.ORIENTATION_0));
+            }
+        }
         setTapListener(imageView);
     }
 
+    private void showImage(Uri mediaUri, int orientation) {
+        imageView.setOrientation(orientation);
+        imageView.setImage(ImageSource.uri(mediaUri));
+    }
+
     @Override
     public void onDestroyView() {
+        if (orientationDisposable != null) orientationDisposable.dispose();
         imageView.recycle();
         super.onDestroyView();
     }
@@ -11,6 +11,7 @@ import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.StringRes;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.CardView;
@@ -38,9 +39,11 @@ import com.imagestudio.R;
 import com.imagestudio.activities.PaletteActivity;
 import com.imagestudio.adapters.MediaAdapter;
 import com.imagestudio.data.Album;
-import com.imagestudio.data.HandlingAlbums;
+import com.imagestudio.data.AlbumSettingsRepository;
 import com.imagestudio.data.Media;
 import com.imagestudio.data.MediaHelper;
+import com.imagestudio.data.duplicates.DuplicatesHelper;
+import com.imagestudio.data.duplicates.SimilarMediaFinder;
 import com.imagestudio.data.filter.FilterMode;
 import com.imagestudio.data.filter.MediaFilter;
 import com.imagestudio.data.provider.CPHelper;
@@ -63,10 +66,12 @@ import org.horaapps.liz.ThemedActivity;
 import org.horaapps.liz.ui.ThemedIcon;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Locale;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
+import io.reactivex.Observable;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.schedulers.Schedulers;
 import jp.wasabeef.recyclerview.animators.LandingAnimator;
@@ -122,6 +127,12 @@ public class RvMediaFragment extends BaseMediaGridFragment {
         setUpColumns();
     }
 
+    @Override
+    public void onStop() {
+        super.onStop();
+        settings().flush();
+    }
+
     private void reload() {
         loadAlbum(album);
     }
@@ -238,8 +249,8 @@ public class RvMediaFragment extends BaseMediaGridFragment {
         return album.settings.getSortingOrder();
     }
 
-    private HandlingAlbums db() {
-        return HandlingAlbums.getInstance(getContext().getApplicationContext());
+    private AlbumSettingsRepository settings() {
+        return AlbumSettingsRepository.getInstance(getContext().getApplicationContext());
     }
 
 
@@ -327,7 +338,7 @@ public class RvMediaFragment extends BaseMediaGridFragment {
             case R.id.set_as_cover:
                 String path = adapter.getFirstSelected().getPath();
                 album.setCover(path);
-                db().setCover(album.getPath(), path);
+                settings().setCover(album.getPath(), path);
                 adapter.clearSelected();
                 return true;
 
@@ -364,30 +375,40 @@ public class RvMediaFragment extends BaseMediaGridFragment {
                 else adapter.selectAll();
                 return true;
 
+            case R.id.select_similar:
+                selectCopies(SimilarMediaFinder.getInstance(getContext()).findSimilar(new ArrayList<>(adapter.getMedia())),
+                        R.string.no_similar_media);
+                return true;
+
+            case R.id.select_duplicates:
+                selectCopies(DuplicatesHelper.findDuplicates(new ArrayList<>(adapter.getMedia())),
+                        R.string.no_duplicate_media);
+                return true;
+
             case R.id.name_sort_mode:
                 adapter.changeSortingMode(SortingMode.NAME);
-                HandlingAlbums.getInstance(getContext()).setSortingMode(album.getPath(), SortingMode.NAME.getValue());
+                settings().setSortingMode(album.getPath(), SortingMode.NAME);
                 album.setSortingMode(SortingMode.NAME);
                 item.setChecked(true);
                 return true;
 
             case R.id.date_taken_sort_mode:
                 adapter.changeSortingMode(SortingMode.DATE);
-                HandlingAlbums.getInstance(getContext()).setSortingMode(album.getPath(), SortingMode.DATE.getValue());
+                settings().setSortingMode(album.getPath(), SortingMode.DATE);
                 album.setSortingMode(SortingMode.DATE);
                 item.setChecked(true);
                 return true;
 
             case R.id.size_sort_mode:
                 adapter.changeSortingMode(SortingMode.SIZE);
-                HandlingAlbums.getInstance(getContext()).setSortingMode(album.getPath(), SortingMode.SIZE.getValue());
+                settings().setSortingMode(album.getPath(), SortingMode.SIZE);
                 album.setSortingMode(SortingMode.SIZE);
                 item.setChecked(true);
                 return true;
 
             case R.id.numeric_sort_mode:
                 adapter.changeSortingMode(SortingMode.NUMERIC);
-                HandlingAlbums.getInstance(getContext()).setSortingMode(album.getPath(), SortingMode.NUMERIC.getValue());
+                settings().setSortingMode(album.getPath(), SortingMode.NUMERIC);
                 album.setSortingMode(SortingMode.NUMERIC);
                 item.setChecked(true);
                 return true;
@@ -396,7 +417,7 @@ public class RvMediaFragment extends BaseMediaGridFragment {
                 item.setChecked(!item.isChecked());
                 SortingOrder sortingOrder = SortingOrder.fromValue(item.isChecked());
                 adapter.changeSortingOrder(sortingOrder);
-                HandlingAlbums.getInstance(getContext()).setSortingOrder(album.getPath(), sortingOrder.getValue());
+                settings().setSortingOrder(album.getPath(), sortingOrder);
                 album.setSortingOrder(sortingOrder);
                 return true;
 
@@ -611,6 +632,23 @@ public class RvMediaFragment extends BaseMediaGridFragment {
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Select every media but the first of each group, ready to be deleted.
+     */
+    private void selectCopies(Observable<ArrayList<Media>> groups, @StringRes int nothingFound) {
+        HashSet<Media> copies = new HashSet<>();
+        groups.subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(group -> copies.addAll(group.subList(1, group.size())),
+                        throwable -> Log.wtf("asd", throwable),
+                        () -> {
+                            if (!isAdded()) return;
+                            if (copies.isEmpty())
+                                Toast.makeText(getContext(), nothingFound, Toast.LENGTH_SHORT).show();
+                            else adapter.select(copies);
+                        });
+    }
+
     private void showDeleteBottomSheet() {
         MediaUtils.deleteMedia(getContext(), adapter.getSelected(), getChildFragmentManager(),
                 new ProgressBottomSheet.Listener<Media>() {
@@ -1,5 +1,6 @@
 package com.imagestudio.fragments;
 
+import android.content.ComponentName;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
@@ -15,8 +16,11 @@ import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
 
 import com.imagestudio.R;
+import com.imagestudio.activities.PlayerActivity;
 import com.imagestudio.data.Media;
 import com.imagestudio.data.StorageHelper;
+import com.imagestudio.data.posters.VideoPoster;
+import com.imagestudio.views.videoplayer.WarmPlayerPool;
 import org.horaapps.liz.ThemeHelper;
 import org.horaapps.liz.ui.ThemedIcon;
 
@@ -25,12 +29,21 @@ import butterknife.ButterKnife;
 
 /**
  * A Media Fragment for showing a Video Preview.
+ *
+ * While its page is the visible one, a player is prepared for the video in the {@link WarmPlayerPool}
+ * so the {@link PlayerActivity} starts playing at once. It is only prepared when our player is the
+ * one opening the video, an external player set as the default still gets it.
  */
 public class VideoFragment extends BaseMediaFragment {
 
     @BindView(R.id.media_view) ImageView previewView;
     @BindView(R.id.video_play_icon) ThemedIcon playVideoIcon;
 
+    private Uri uri;
+    private boolean visible = false;
+    /* the video opens in our player, which takes the warm one over */
+    private boolean handoff = false;
+
     @NonNull
     public static VideoFragment newInstance(@NonNull Media media) {
         return BaseMediaFragment.newInstance(new VideoFragment(), media);
@@ -47,12 +60,14 @@ public class VideoFragment extends BaseMediaFragment {
     public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
 
-        playVideoIcon.setOnClickListener(v -> {
-            Uri uri = StorageHelper.getUriForFile(getContext(), media.getFile());
-            Intent intent = new Intent(Intent.ACTION_VIEW).setDataAndType(uri, media.getMimeType());
-            intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-            startActivity(intent);
-        });
+        // a missing file has nothing to warm up, the player reports the error when tapped
+        uri = media.getFile() != null ? StorageHelper.getUriForFile(getContext(), media.getFile()) : null;
+        Intent intent = new Intent(Intent.ACTION_VIEW).setDataAndType(uri != null ? uri : media.getUri(), media.getMimeType());
+        intent.setFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+
+        ComponentName player = intent.resolveActivity(getContext().getPackageManager());
+        handoff = uri != null && player != null && player.equals(new ComponentName(getContext(), PlayerActivity.class));
+        playVideoIcon.setOnClickListener(v -> startActivity(intent));
 
         // TODO: See where we can move this. Seems like boilerplate code that belongs in
         // a utility class or Builder of some sort.
@@ -61,10 +76,40 @@ public class VideoFragment extends BaseMediaFragment {
                         .diskCacheStrategy(
                                 DiskCacheStrategy.AUTOMATIC);
 
-        Glide.with(getContext()).load(media.getUri()).apply(options).into(previewView);
+        Glide.with(getContext()).load(new VideoPoster(media)).apply(options).into(previewView);
         setTapListener(previewView);
     }
 
+    @Override
+    public void setUserVisibleHint(boolean isVisibleToUser) {
+        super.setUserVisibleHint(isVisibleToUser);
+        visible = isVisibleToUser;
+        updateWarmPlayer();
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        updateWarmPlayer();
+    }
+
+    @Override
+    public void onStop() {
+        // the player screen, if opened, has already taken the player by now
+        if (handoff) WarmPlayerPool.getInstance(getContext()).discard(uri);
+        super.onStop();
+    }
+
+    /**
+     * Keep a player prepared while the page is settled, release it once swiped away.
+     */
+    private void updateWarmPlayer() {
+        if (!handoff || getContext() == null) return;
+        WarmPlayerPool pool = WarmPlayerPool.getInstance(getContext());
+        if (visible && isResumed()) pool.warm(uri);
+        else if (!visible) pool.discard(uri);
+    }
+
     @Override
     public void refreshTheme(ThemeHelper themeHelper) {
         playVideoIcon.refreshTheme(themeHelper);
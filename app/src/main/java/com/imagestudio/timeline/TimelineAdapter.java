@@ -287,7 +287,7 @@ public class TimelineAdapter extends ThemedAdapter<TimelineViewHolder> {
         Calendar currentDate = null;
         for (int position = 0; position < mediaList.size(); position++) {
             Calendar mediaDate = new GregorianCalendar();
-            mediaDate.setTimeInMillis(mediaList.get(position).getDateModified());
+            mediaDate.setTimeInMillis(mediaList.get(position).getDateTaken());
             if (currentDate == null || !groupingMode.isInGroup(currentDate, mediaDate)) {
                 currentDate = mediaDate;
                 TimelineHeaderModel timelineHeaderModel = new TimelineHeaderModel(mediaDate);
@@ -17,6 +17,7 @@ import com.mikepenz.google_material_typeface_library.GoogleMaterial;
 
 import com.imagestudio.R;
 import com.imagestudio.data.Media;
+import com.imagestudio.data.posters.VideoPoster;
 import com.imagestudio.timeline.data.TimelineHeaderModel;
 import com.imagestudio.views.SquareRelativeLayout;
 import org.horaapps.liz.ThemeHelper;
@@ -97,7 +98,7 @@ public class ViewHolder {
                     .diskCacheStrategy(DiskCacheStrategy.ALL);
 
             Glide.with(imageView.getContext())
-                    .load(mediaItem.getUri())
+                    .load(VideoPoster.model(mediaItem))
                     .apply(options)
                     .thumbnail(0.5f)
                     .into(imageView);
@@ -11,6 +11,7 @@ import android.support.annotation.StringRes;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.widget.CardView;
 import android.text.method.LinkMovementMethod;
+import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -42,6 +43,8 @@ import java.lang.reflect.Field;
 import java.util.Locale;
 
 import in.uncod.android.bypass.Bypass;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
 
 import static com.imagestudio.util.ServerConstants.LEAFPIC_CHANGELOG;
 
@@ -50,6 +53,8 @@ import static com.imagestudio.util.ServerConstants.LEAFPIC_CHANGELOG;
  */
 public class AlertDialogsHelper {
 
+    private static final String TAG = "AlertDialogsHelper";
+
     public static AlertDialog getInsertTextDialog(ThemedActivity activity, EditText editText, @StringRes int title) {
 
         AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(activity, activity.getDialogStyle());
@@ -118,38 +123,10 @@ public class AlertDialogsHelper {
     public static AlertDialog getDetailsDialog(final ThemedActivity activity, final Media f) {
         AlertDialog.Builder detailsDialogBuilder = new AlertDialog.Builder(activity, activity.getDialogStyle());
         MetadataHelper mdhelper = new MetadataHelper();
-        MediaDetailsMap<String, String> mainDetails = mdhelper.getMainDetails(activity, f);
         final View dialogLayout = activity.getLayoutInflater().inflate(com.imagestudio.R.layout.dialog_media_detail, null);
-        ImageView imgMap = dialogLayout.findViewById(R.id.photo_map);
         dialogLayout.findViewById(com.imagestudio.R.id.details_title).setBackgroundColor(activity.getPrimaryColor());
         ((CardView) dialogLayout.findViewById(com.imagestudio.R.id.photo_details_card)).setCardBackgroundColor(activity.getCardBackgroundColor());
-
-        final GeoLocation location;
-        if ((location = f.getGeoLocation()) != null) {
-
-            StaticMapProvider staticMapProvider = StaticMapProvider.fromValue(
-                    Hawk.get(activity.getString(R.string.preference_map_provider), StaticMapProvider.GOOGLE_MAPS.getValue()));
-
-            Glide.with(activity.getApplicationContext())
-                    .load(staticMapProvider.getUrl(location))
-                    .into(imgMap);
-
-            imgMap.setOnClickListener(new View.OnClickListener() {
-                public void onClick(View v) {
-                    try {
-                        activity.startActivity(new Intent(Intent.ACTION_VIEW,
-                                Uri.parse(String.format(Locale.ENGLISH, "geo:%f,%f?z=%d", location.getLatitude(), location.getLongitude(), 17))));
-                    } catch (ActivityNotFoundException e) {
-                        Toast.makeText(activity, R.string.no_app_to_perform, Toast.LENGTH_SHORT).show();
-                    }
-
-                }
-            });
-
-            imgMap.setVisibility(View.VISIBLE);
-            dialogLayout.findViewById(com.imagestudio.R.id.details_title).setVisibility(View.GONE);
-
-        } else imgMap.setVisibility(View.GONE);
+        dialogLayout.findViewById(R.id.photo_map).setVisibility(View.GONE);
 
         final TextView showMoreText = dialogLayout.findViewById(R.id.details_showmore);
         showMoreText.setOnClickListener(new View.OnClickListener() {
@@ -161,17 +138,56 @@ public class AlertDialogsHelper {
         });
 
         detailsDialogBuilder.setView(dialogLayout);
-        loadDetails(dialogLayout,activity, mainDetails);
-        return detailsDialogBuilder.create();
+        loadDetails(dialogLayout,activity, mdhelper.getFileDetails(activity, f));
+        AlertDialog detailsDialog = detailsDialogBuilder.create();
+
+        // parsing the file may be slow, its details are appended once ready
+        Disposable metadata = mdhelper.getMetadata(activity.getApplicationContext(), f)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        item -> {
+                            loadDetails(dialogLayout, activity, mdhelper.getMetadataDetails(activity, item));
+                            if (item.getLocation() != null)
+                                showMap(dialogLayout, activity, item.getLocation());
+                        },
+                        throwable -> Log.w(TAG, "Unable to load the metadata of " + f.getDisplayPath(), throwable));
+        detailsDialog.setOnDismissListener(dialog -> metadata.dispose());
+        return detailsDialog;
+    }
+
+    private static void showMap(View dialogLayout, final ThemedActivity activity, final GeoLocation location) {
+        ImageView imgMap = dialogLayout.findViewById(R.id.photo_map);
+
+        StaticMapProvider staticMapProvider = StaticMapProvider.fromValue(
+                Hawk.get(activity.getString(R.string.preference_map_provider), StaticMapProvider.GOOGLE_MAPS.getValue()));
+
+        Glide.with(activity.getApplicationContext())
+                .load(staticMapProvider.getUrl(location))
+                .into(imgMap);
+
+        imgMap.setOnClickListener(new View.OnClickListener() {
+            public void onClick(View v) {
+                try {
+                    activity.startActivity(new Intent(Intent.ACTION_VIEW,
+                            Uri.parse(String.format(Locale.ENGLISH, "geo:%f,%f?z=%d", location.getLatitude(), location.getLongitude(), 17))));
+                } catch (ActivityNotFoundException e) {
+                    Toast.makeText(activity, R.string.no_app_to_perform, Toast.LENGTH_SHORT).show();
+                }
+
+            }
+        });
+
+        imgMap.setVisibility(View.VISIBLE);
+        dialogLayout.findViewById(com.imagestudio.R.id.details_title).setVisibility(View.GONE);
     }
 
-    private static void loadDetails(View dialogLayout, ThemedActivity activity, MediaDetailsMap<String, String> metadata) {
+    private static void loadDetails(View dialogLayout, ThemedActivity activity, MediaDetailsMap metadata) {
         LinearLayout detailsTable = dialogLayout.findViewById(R.id.ll_list_details);
 
         int tenPxInDp = Measure.pxToDp (10, activity);
         int hundredPxInDp = Measure.pxToDp (125, activity);//more or less an hundred. Did not used weight for a strange bug
 
-        for (int index : metadata.getKeySet()) {
+        for (int index = 0; index < metadata.size(); index++) {
             LinearLayout row = new LinearLayout(activity.getApplicationContext());
             row.setOrientation(LinearLayout.HORIZONTAL);
 
@@ -195,7 +211,7 @@ public class AlertDialogsHelper {
     }
 
     private static void showMoreDetails(View dialogLayout, ThemedActivity activity, Media media) {
-        MediaDetailsMap<String, String> metadata = new MediaDetailsMap<>();//media.getAllDetails();
+        MediaDetailsMap metadata = new MediaDetailsMap();//media.getAllDetails();
         loadDetails(dialogLayout ,activity , metadata);
     }
 
@@ -34,5 +34,7 @@ public final class Defaults {
 
     public static final boolean ANIMATIONS_DISABLED = false;
 
+    public static final boolean LOW_MEMORY_VIDEO_BUFFER = false;
+
     public static final boolean TIMELINE_ENABLED = false;
 }
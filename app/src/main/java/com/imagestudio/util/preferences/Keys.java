@@ -28,6 +28,8 @@ public final class Keys {
 
     public static final String ANIMATIONS_DISABLED = "disable_animations";
 
+    public static final String LOW_MEMORY_VIDEO_BUFFER = "low_memory_video_buffer";
+
     // Feature flags
     public static final String TIMELINE_ENABLED = "enable_timeline";
 }
@@ -112,6 +112,13 @@ public class Prefs {
         return !getPrefs().get(Keys.ANIMATIONS_DISABLED, Defaults.ANIMATIONS_DISABLED);
     }
 
+    /**
+     * Should the video player keep less of the video in memory.
+     */
+    public static boolean lowMemoryVideoBuffer() {
+        return getPrefs().get(Keys.LOW_MEMORY_VIDEO_BUFFER, Defaults.LOW_MEMORY_VIDEO_BUFFER);
+    }
+
     /**
      * Whether the Timeline view is enabled.
      */
@@ -0,0 +1,90 @@
+package com.imagestudio.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import com.davemorrissey.labs.subscaleview.SubsamplingScaleImageView;
+import com.davemorrissey.labs.subscaleview.decoder.DecoderFactory;
+import com.davemorrissey.labs.subscaleview.decoder.ImageRegionDecoder;
+
+import com.imagestudio.data.Media;
+
+/**
+ * Region decoder for {@link SubsamplingScaleImageView} going through the shared {@link TileCache}:
+ * tiles already decoded for the same media, sample size and region are served from memory and the
+ * region decoder of the image is reused while it stays in the pool.
+ */
+public class CachedRegionDecoder implements ImageRegionDecoder {
+
+    private final String media;
+    private TileCache.PooledDecoder pooled = null;
+
+    private CachedRegionDecoder(String media) {
+        this.media = media;
+    }
+
+    /**
+     * @return a factory of decoders for the given media, to set on the view before its image
+     */
+    public static DecoderFactory<CachedRegionDecoder> factory(Media media) {
+        String key = media.getUri() + "_" + media.getDateModified();
+        return () -> new CachedRegionDecoder(key);
+    }
+
+    @NonNull
+    @Override
+    public Point init(Context context, @NonNull Uri uri) throws Exception {
+        pooled = TileCache.getInstance().acquire(context, media, uri);
+        return new Point(pooled.decoder.getWidth(), pooled.decoder.getHeight());
+    }
+
+    @NonNull
+    @Override
+    public Bitmap decodeRegion(@NonNull Rect sRect, int sampleSize) {
+        TileCache cache = TileCache.getInstance();
+        String key = TileCache.key(media, sampleSize, sRect);
+        Bitmap tile = cache.get(key);
+        if (tile != null) return tile;
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        options.inMutable = true;
+        // only reuse a bitmap when the size of the tile doesn't depend on how it is rounded
+        if (sRect.width() % sampleSize == 0 && sRect.height() % sampleSize == 0)
+            options.inBitmap = cache.getReusable(sRect.width() / sampleSize, sRect.height() / sampleSize, Bitmap.Config.RGB_565);
+
+        Bitmap decoded;
+        try {
+            decoded = pooled.decoder.decodeRegion(sRect, options);
+        } catch (IllegalArgumentException e) {
+            // the reused bitmap didn't fit after all
+            options.inBitmap = null;
+            decoded = pooled.decoder.decodeRegion(sRect, options);
+        }
+        if (decoded == null)
+            throw new RuntimeException("Region decoder returned null bitmap - image format may not be supported");
+
+        // copied before caching, another tile thread may evict it as soon as it is cached
+        Bitmap copy = decoded.copy(decoded.getConfig(), false);
+        cache.put(key, decoded);
+        return copy;
+    }
+
+    @Override
+    public boolean isReady() {
+        return pooled != null && !pooled.decoder.isRecycled();
+    }
+
+    @Override
+    public void recycle() {
+        if (pooled == null) return;
+        TileCache.getInstance().release(pooled);
+        pooled = null;
+    }
+}
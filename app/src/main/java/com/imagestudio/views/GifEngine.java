@@ -0,0 +1,91 @@
+package com.imagestudio.views;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+
+import pl.droidsonroids.gif.GifAnimationMetaData;
+import pl.droidsonroids.gif.GifDrawable;
+import pl.droidsonroids.gif.GifDrawableBuilder;
+
+/**
+ * Creates the {@link GifDrawable}s of the viewer within a memory budget shared by every page.
+ *
+ * A GIF is subsampled down to the size of the view when decoded, and further when the frame buffers
+ * of the GIFs already alive don't leave enough room for it. Drawables must be given back with
+ * {@link #release(GifDrawable)} to free their share of the budget.
+ */
+public class GifEngine {
+
+    private static final String TAG = "GifEngine";
+
+    /* subsampling stops there, the GIF becomes unreadable past it */
+    private static final int MAX_SAMPLE_SIZE = 16;
+
+    private static GifEngine mInstance = null;
+
+    private final ContentResolver resolver;
+    private final long budget;
+    private final IdentityHashMap<GifDrawable, Long> allocations = new IdentityHashMap<>();
+    private long allocated = 0;
+
+    private GifEngine(Context context) {
+        this.resolver = context.getContentResolver();
+        this.budget = Math.min(Runtime.getRuntime().maxMemory() / 16, 32L * 1024 * 1024);
+    }
+
+    public static synchronized GifEngine getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new GifEngine(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Decode a GIF stopped on its first frame, downsampled to fit the view and the budget.
+     *
+     * @return the drawable, null if the GIF can't be read
+     */
+    @Nullable
+    public synchronized GifDrawable load(Uri uri, int viewWidth, int viewHeight) {
+        try {
+            GifAnimationMetaData metaData = new GifAnimationMetaData(resolver, uri);
+
+            int sampleSize = 1;
+            while (sampleSize < MAX_SAMPLE_SIZE
+                    && metaData.getWidth() / (sampleSize * 2) >= viewWidth
+                    && metaData.getHeight() / (sampleSize * 2) >= viewHeight)
+                sampleSize *= 2;
+            while (sampleSize < MAX_SAMPLE_SIZE
+                    && allocated + metaData.getDrawableAllocationByteCount(null, sampleSize) > budget)
+                sampleSize *= 2;
+
+            GifDrawable drawable = new GifDrawableBuilder()
+                    .from(resolver, uri)
+                    .sampleSize(sampleSize)
+                    .build();
+            drawable.stop();
+
+            long size = drawable.getAllocationByteCount();
+            allocations.put(drawable, size);
+            allocated += size;
+            return drawable;
+        } catch (IOException e) {
+            Log.w(TAG, "Can't decode " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * Recycle a drawable returned by {@link #load(Uri, int, int)}.
+     */
+    public synchronized void release(GifDrawable drawable) {
+        Long size = allocations.remove(drawable);
+        if (size != null) allocated -= size;
+        drawable.recycle();
+    }
+}
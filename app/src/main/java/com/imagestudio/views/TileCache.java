@@ -0,0 +1,147 @@
+package com.imagestudio.views;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process wide store of the full screen image tiles: decoded tiles in a size bounded LRU keyed by
+ * media, sample size and region, the open region decoders of the last images, and the bitmaps evicted
+ * from the cache kept to be decoded into again.
+ *
+ * The view recycles the tiles it is given, so callers get copies and the cached bitmaps are never
+ * handed out. Lookups and copies, insertions, evictions and reuse all hold the lock of the cache, so
+ * a tile can't be recycled or decoded into while it is being copied.
+ */
+class TileCache {
+
+    /* region decoders kept open, the current image and its neighbours */
+    private static final int MAX_DECODERS = 4;
+    private static final int MAX_REUSABLE = 8;
+
+    private static TileCache mInstance = null;
+
+    private final LruCache<String, Bitmap> tiles;
+    private final ArrayList<Bitmap> reusable = new ArrayList<>(MAX_REUSABLE);
+
+    static class PooledDecoder {
+        final BitmapRegionDecoder decoder;
+        int users = 0;
+        boolean evicted = false;
+
+        PooledDecoder(BitmapRegionDecoder decoder) {
+            this.decoder = decoder;
+        }
+    }
+
+    private final HashMap<String, PooledDecoder> decoders = new LinkedHashMap<String, PooledDecoder>(MAX_DECODERS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PooledDecoder> eldest) {
+            if (size() <= MAX_DECODERS) return false;
+            eldest.getValue().evicted = true;
+            if (eldest.getValue().users == 0) eldest.getValue().decoder.recycle();
+            return true;
+        }
+    };
+
+    private TileCache() {
+        int maxSize = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, 64L * 1024 * 1024);
+        tiles = new LruCache<String, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(String key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (evicted) recycleLater(oldValue);
+            }
+        };
+    }
+
+    static synchronized TileCache getInstance() {
+        if (mInstance == null)
+            mInstance = new TileCache();
+        return mInstance;
+    }
+
+    static String key(String media, int sampleSize, Rect region) {
+        return media + '|' + sampleSize + '|' + region.flattenToString();
+    }
+
+    /**
+     * @return a copy of the cached tile, null if missing
+     */
+    @Nullable
+    synchronized Bitmap get(String key) {
+        Bitmap tile = tiles.get(key);
+        return tile != null ? tile.copy(tile.getConfig(), false) : null;
+    }
+
+    /**
+     * Cache a tile, the caller must not use it afterwards: it can be evicted and reused at once.
+     */
+    synchronized void put(String key, Bitmap tile) {
+        tiles.put(key, tile);
+    }
+
+    /**
+     * @return an evicted bitmap with exactly this size and config to decode into, null if none
+     */
+    @Nullable
+    synchronized Bitmap getReusable(int width, int height, Bitmap.Config config) {
+        for (int i = 0; i < reusable.size(); i++) {
+            Bitmap bitmap = reusable.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height && bitmap.getConfig() == config)
+                return reusable.remove(i);
+        }
+        return null;
+    }
+
+    private synchronized void recycleLater(Bitmap bitmap) {
+        if (!bitmap.isMutable() || bitmap.isRecycled()) return;
+        if (reusable.size() == MAX_REUSABLE) reusable.remove(0).recycle();
+        reusable.add(bitmap);
+    }
+
+    /**
+     * Get the open region decoder of an image, opening it if needed. Every acquire must be
+     * followed by a {@link #release(PooledDecoder)}.
+     */
+    synchronized PooledDecoder acquire(Context context, String media, Uri uri) throws IOException {
+        PooledDecoder pooled = decoders.get(media);
+        if (pooled == null) {
+            pooled = new PooledDecoder(open(context, uri));
+            decoders.put(media, pooled);
+        }
+        pooled.users++;
+        return pooled;
+    }
+
+    synchronized void release(PooledDecoder pooled) {
+        // decoders evicted while in use are recycled by their last user
+        if (--pooled.users == 0 && pooled.evicted) pooled.decoder.recycle();
+    }
+
+    private static BitmapRegionDecoder open(Context context, Uri uri) throws IOException {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()))
+            return BitmapRegionDecoder.newInstance(uri.getPath(), false);
+
+        try (InputStream in = context.getContentResolver().openInputStream(uri)) {
+            if (in == null) throw new IOException("Can't open " + uri);
+            return BitmapRegionDecoder.newInstance(in, false);
+        }
+    }
+}
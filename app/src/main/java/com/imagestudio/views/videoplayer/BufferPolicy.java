@@ -0,0 +1,73 @@
+package com.imagestudio.views.videoplayer;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.DefaultLoadControl;
+import com.google.android.exoplayer2.LoadControl;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+
+import com.imagestudio.util.preferences.Prefs;
+
+/**
+ * How much of a video the player buffers, picked from where the video comes from and its bitrate.
+ *
+ * Local files are read faster than they play, a few seconds ahead are enough to start at once and
+ * seek without stalls, and high bitrate ones keep even less to stay within memory. Streams keep
+ * the ExoPlayer defaults. The low memory setting halves the buffers of every policy.
+ */
+public enum BufferPolicy {
+
+    LOCAL(2000, 10000, 500, 1000),
+    LOCAL_HIGH_BITRATE(1000, 5000, 250, 500),
+    STREAM(DefaultLoadControl.DEFAULT_MIN_BUFFER_MS, DefaultLoadControl.DEFAULT_MAX_BUFFER_MS,
+            DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_MS, DefaultLoadControl.DEFAULT_BUFFER_FOR_PLAYBACK_AFTER_REBUFFER_MS);
+
+    private static final String TAG = "BufferPolicy";
+
+    /* 4K and high frame rate recordings, about 20 Mbps and up */
+    private static final int HIGH_BITRATE = 20 * 1000 * 1000;
+
+    private final int minBufferMs, maxBufferMs;
+    private final long bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs;
+
+    BufferPolicy(int minBufferMs, int maxBufferMs, long bufferForPlaybackMs, long bufferForPlaybackAfterRebufferMs) {
+        this.minBufferMs = minBufferMs;
+        this.maxBufferMs = maxBufferMs;
+        this.bufferForPlaybackMs = bufferForPlaybackMs;
+        this.bufferForPlaybackAfterRebufferMs = bufferForPlaybackAfterRebufferMs;
+    }
+
+    public static boolean isStream(Uri uri) {
+        return "http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme());
+    }
+
+    /**
+     * Pick the policy of a video, reading the bitrate from the container of local files.
+     */
+    public static BufferPolicy of(Context context, Uri uri) {
+        if (isStream(uri)) return STREAM;
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            String bitrate = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_BITRATE);
+            return bitrate != null && Long.parseLong(bitrate) > HIGH_BITRATE ? LOCAL_HIGH_BITRATE : LOCAL;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Can't read the bitrate of " + uri, e);
+            return LOCAL;
+        } finally {
+            retriever.release();
+        }
+    }
+
+    public LoadControl buildLoadControl() {
+        int divider = Prefs.lowMemoryVideoBuffer() ? 2 : 1;
+        return new DefaultLoadControl(new DefaultAllocator(true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+                minBufferMs / divider, maxBufferMs / divider,
+                bufferForPlaybackMs, bufferForPlaybackAfterRebufferMs);
+    }
+}
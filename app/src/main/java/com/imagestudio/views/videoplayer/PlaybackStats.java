@@ -0,0 +1,73 @@
+package com.imagestudio.views.videoplayer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer2.Player;
+
+/**
+ * Measures how long a video takes to be ready after being prepared and how many times playback
+ * stalls to buffer. Buffering right after a seek doesn't count as a stall.
+ */
+public class PlaybackStats extends Player.DefaultEventListener {
+
+    private static final String TAG = "PlaybackStats";
+
+    private final String name;
+    private long startedAt;
+    private long startupMs = -1;
+    private int rebuffers = 0;
+    private boolean ready = false, seeking = false;
+
+    /**
+     * Start measuring, to be created when the player is prepared.
+     */
+    public PlaybackStats(String name) {
+        this.name = name;
+        this.startedAt = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Measure again from now, for a player prepared ahead of time and shown only now.
+     */
+    public void restart() {
+        startedAt = SystemClock.elapsedRealtime();
+        startupMs = -1;
+        rebuffers = 0;
+    }
+
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+        switch (playbackState) {
+            case Player.STATE_READY:
+                if (startupMs < 0) startupMs = SystemClock.elapsedRealtime() - startedAt;
+                ready = true;
+                seeking = false;
+                break;
+            case Player.STATE_BUFFERING:
+                if (ready && !seeking) rebuffers++;
+                ready = false;
+                break;
+            default:
+                ready = false;
+                break;
+        }
+    }
+
+    @Override
+    public void onPositionDiscontinuity(@Player.DiscontinuityReason int reason) {
+        if (reason == Player.DISCONTINUITY_REASON_SEEK) seeking = true;
+    }
+
+    public long getStartupMs() {
+        return startupMs;
+    }
+
+    public int getRebuffers() {
+        return rebuffers;
+    }
+
+    public void log() {
+        Log.d(TAG, name + ": ready in " + startupMs + "ms, " + rebuffers + " rebuffers");
+    }
+}
@@ -0,0 +1,43 @@
+package com.imagestudio.views.videoplayer;
+
+import android.content.Context;
+
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource;
+import com.google.android.exoplayer2.upstream.cache.CacheDataSourceFactory;
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+
+import java.io.File;
+
+/**
+ * Disk cache of the streamed videos, so seeking back in a stream or playing it again reads the
+ * bytes already downloaded. A folder can only be opened by one cache, hence the single instance.
+ */
+public class VideoCache {
+
+    private static final long MAX_SIZE = 128L * 1024 * 1024;
+
+    private static VideoCache mInstance = null;
+
+    private final Cache cache;
+
+    private VideoCache(Context context) {
+        cache = new SimpleCache(new File(context.getCacheDir(), "video_cache"), new LeastRecentlyUsedCacheEvictor(MAX_SIZE));
+    }
+
+    public static synchronized VideoCache getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new VideoCache(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * @return a factory of data sources reading through the cache, falling back to the upstream
+     * ones when the cache fails
+     */
+    public DataSource.Factory wrap(DataSource.Factory upstream) {
+        return new CacheDataSourceFactory(cache, upstream, CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+    }
+}
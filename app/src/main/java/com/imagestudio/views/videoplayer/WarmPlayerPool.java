@@ -0,0 +1,131 @@
+package com.imagestudio.views.videoplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.Nullable;
+
+import com.google.android.exoplayer2.DefaultRenderersFactory;
+import com.google.android.exoplayer2.ExoPlayerFactory;
+import com.google.android.exoplayer2.SimpleExoPlayer;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.source.ExtractorMediaSource;
+import com.google.android.exoplayer2.trackselection.AdaptiveTrackSelection;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelection;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultDataSourceFactory;
+import com.google.android.exoplayer2.util.Util;
+
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Keeps one player prepared ahead of time for the video shown in the viewer, muted and paused at
+ * its first frame, so the player screen takes it over instead of building and preparing its own.
+ *
+ * The player has no surface until it is taken, the extraction, track selection and first buffers
+ * are done. Everything runs on the main thread, where the players are created.
+ */
+public class WarmPlayerPool {
+
+    private static WarmPlayerPool mInstance = null;
+
+    public static class WarmPlayer {
+        public final Uri uri;
+        public final SimpleExoPlayer player;
+        public final DefaultTrackSelector trackSelector;
+        public final TrackSelection.Factory trackSelectionFactory;
+        public final PlaybackStats stats;
+
+        WarmPlayer(Uri uri, SimpleExoPlayer player, DefaultTrackSelector trackSelector,
+                   TrackSelection.Factory trackSelectionFactory, PlaybackStats stats) {
+            this.uri = uri;
+            this.player = player;
+            this.trackSelector = trackSelector;
+            this.trackSelectionFactory = trackSelectionFactory;
+            this.stats = stats;
+        }
+    }
+
+    private final Context context;
+    private WarmPlayer warm = null;
+    private Uri pending = null;
+    private Disposable preparing = null;
+
+    private WarmPlayerPool(Context context) {
+        this.context = context;
+    }
+
+    public static synchronized WarmPlayerPool getInstance(Context context) {
+        if (mInstance == null)
+            mInstance = new WarmPlayerPool(context.getApplicationContext());
+        return mInstance;
+    }
+
+    /**
+     * Prepare a player for the video, replacing the one prepared for another video.
+     */
+    public void warm(Uri uri) {
+        if (uri.equals(pending) || (warm != null && uri.equals(warm.uri))) return;
+        release();
+
+        pending = uri;
+        // the buffer policy reads the bitrate from the file
+        preparing = Observable.fromCallable(() -> BufferPolicy.of(context, uri))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(policy -> {
+                    pending = null;
+                    warm = prepare(uri, policy);
+                }, throwable -> pending = null);
+    }
+
+    private WarmPlayer prepare(Uri uri, BufferPolicy policy) {
+        TrackSelection.Factory trackSelectionFactory = new AdaptiveTrackSelection.Factory(new DefaultBandwidthMeter());
+        DefaultTrackSelector trackSelector = new DefaultTrackSelector(trackSelectionFactory);
+        DefaultRenderersFactory renderersFactory = new DefaultRenderersFactory(context,
+                null, DefaultRenderersFactory.EXTENSION_RENDERER_MODE_PREFER);
+
+        SimpleExoPlayer player = ExoPlayerFactory.newSimpleInstance(renderersFactory, trackSelector, policy.buildLoadControl());
+        player.setVolume(0f);
+        player.setPlayWhenReady(false);
+
+        PlaybackStats stats = new PlaybackStats(uri.toString());
+        player.addListener(stats);
+        player.prepare(new ExtractorMediaSource(uri,
+                new DefaultDataSourceFactory(context, Util.getUserAgent(context, "LeafPic")),
+                new DefaultExtractorsFactory(), null, null));
+        return new WarmPlayer(uri, player, trackSelector, trackSelectionFactory, stats);
+    }
+
+    /**
+     * Take over the player prepared for the video, it is unmuted and the caller must release it.
+     *
+     * @return the player, null if none is prepared for this video
+     */
+    @Nullable
+    public WarmPlayer take(@Nullable Uri uri) {
+        if (warm == null || !warm.uri.equals(uri)) return null;
+        WarmPlayer taken = warm;
+        warm = null;
+        taken.player.setVolume(1f);
+        return taken;
+    }
+
+    /**
+     * Release the player prepared for the video, if it wasn't taken.
+     */
+    public void discard(Uri uri) {
+        if (uri.equals(pending) || (warm != null && uri.equals(warm.uri))) release();
+    }
+
+    private void release() {
+        if (preparing != null) preparing.dispose();
+        preparing = null;
+        pending = null;
+        if (warm != null) warm.player.release();
+        warm = null;
+    }
+}